@@ -14,6 +14,8 @@ package org.leoneti;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -80,6 +82,58 @@ public class Utils {
         return String.format("%032x", new BigInteger(1, md5.digest()));
     }
 
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    /**
+     * MurmurHash3 x64 128 bits of the UTF-8 bytes of data, as 32 hex digits. Not cryptographic, much cheaper than md5().
+     */
+    public static String hash128(String data) {
+        final ByteBuffer buffer = ByteBuffer.wrap( data.getBytes(StandardCharsets.UTF_8) ).order(ByteOrder.LITTLE_ENDIAN);
+        final int len = buffer.remaining();
+        long h1 = 0, h2 = 0;
+        while( buffer.remaining() >= 16 ) {
+            h1 ^= mixK1( buffer.getLong() );
+            h1 = Long.rotateLeft(h1, 27) + h2;
+            h1 = h1 * 5 + 0x52dce729;
+            h2 ^= mixK2( buffer.getLong() );
+            h2 = Long.rotateLeft(h2, 31) + h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+        long k1 = 0, k2 = 0;
+        final int tail = buffer.remaining();
+        for(int i = tail - 1; i >= 8; i--) k2 = (k2 << 8) | (buffer.get(buffer.position() + i) & 0xffL);
+        for(int i = Math.min(tail, 8) - 1; i >= 0; i--) k1 = (k1 << 8) | (buffer.get(buffer.position() + i) & 0xffL);
+        if( tail > 8 ) h2 ^= mixK2(k2);
+        if( tail > 0 ) h1 ^= mixK1(k1);
+        h1 ^= len;
+        h2 ^= len;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        h2 += h1;
+        return String.format("%016x%016x", h1, h2);
+    }
+
+    private static long mixK1(long k1) {
+        return Long.rotateLeft(k1 * C1, 31) * C2;
+    }
+
+    private static long mixK2(long k2) {
+        return Long.rotateLeft(k2 * C2, 33) * C1;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
     public static void main(String[] args) {
         System.out.println("\n  The information about");
         System.out.println("OS Name:\t\t" + System.getProperty("os.name"));
@@ -0,0 +1,155 @@
+/*****************************************************************************************
+* Copyright (C) 2023-2026  Ricardo Leoneti                           Date: 2026-10-17
+*
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v2.0
+* which accompanies this distribution, and is available at
+* https://www.eclipse.org/org/documents/epl-2.0/EPL-2.0.html
+*
+*****************************************************************************************/
+package org.leoneti.jdbc;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Stateless (thread-safe) parser of the ISO-8601 values sent by Redash:
+ * yyyy-MM-dd, HH:mm:ss[.f], yyyy-MM-dd('T'| )HH:mm:ss[.f][Z|+HH|+HHmm|+HH:mm] with fractions up to nanoseconds.
+ * Values without offset are on the default time zone, like SimpleDateFormat did.
+ */
+public final class DateTimeParser {
+
+    private DateTimeParser() {
+    }
+
+    /**
+     * @return Timestamp, Date or Time, or null when text isn't a date/time
+     */
+    public static Object parse(CharSequence text) {
+        if( text == null ) return null;
+        int len = text.length();
+        while( len > 0 && text.charAt(len - 1) <= ' ' ) len--;
+        int p = 0;
+        while( p < len && text.charAt(p) <= ' ' ) p++;
+        int year = 1970, month = 1, day = 1, hour = 0, minute = 0, second = 0, nanos = 0, offset = 0;
+        boolean hasDate = false, hasTime = false, hasOffset = false;
+        if( len - p >= 10 && text.charAt(p + 4) == '-' && text.charAt(p + 7) == '-' ) {
+            year = digits(text, p, 4, len);
+            month = digits(text, p + 5, 2, len);
+            day = digits(text, p + 8, 2, len);
+            if( year < 0 || month < 0 || day < 0 ) return null;
+            hasDate = true;
+            p += 10;
+            if( p < len ) {
+                final char c = text.charAt(p++);
+                if( c != 'T' && c != 't' && c != ' ' ) return null;
+            }
+        }
+        if( p < len ) {
+            if( len - p < 8 || text.charAt(p + 2) != ':' || text.charAt(p + 5) != ':' ) return null;
+            hour = digits(text, p, 2, len);
+            minute = digits(text, p + 3, 2, len);
+            second = digits(text, p + 6, 2, len);
+            if( hour < 0 || minute < 0 || second < 0 ) return null;
+            hasTime = true;
+            p += 8;
+            if( p < len && (text.charAt(p) == '.' || text.charAt(p) == ',') ) {
+                final int start = ++p;
+                while( p < len && isDigit(text.charAt(p)) ) {
+                    // digits after the nanoseconds are dropped
+                    if( p - start < 9 ) nanos = nanos * 10 + (text.charAt(p) - '0');
+                    p++;
+                }
+                if( p == start ) return null;
+                for(int i = p - start; i < 9; i++) nanos *= 10;
+            }
+            if( p < len && text.charAt(p) == ' ' ) p++;
+            if( p < len ) {
+                final char c = text.charAt(p);
+                if( c == 'Z' || c == 'z' ) {
+                    p++;
+                } else if( c == '+' || c == '-' ) {
+                    final int hh = digits(text, p + 1, 2, len);
+                    if( hh < 0 ) return null;
+                    p += 3;
+                    if( p < len && text.charAt(p) == ':' ) p++;
+                    int mm = 0;
+                    if( p < len ) {
+                        mm = digits(text, p, 2, len);
+                        if( mm < 0 ) return null;
+                        p += 2;
+                    }
+                    offset = (c == '-' ? -1 : 1) * (hh * 3600 + mm * 60);
+                } else {
+                    return null;
+                }
+                hasOffset = true;
+            }
+            if( p != len ) return null;
+        }
+        if( !hasDate && !hasTime ) return null;
+        try {
+            if( !hasTime ) {
+                return Date.valueOf( LocalDate.of(year, month, day) );
+            }
+            final LocalDateTime ldt = LocalDateTime.of(year, month, day, hour, minute, second, nanos);
+            if( !hasDate ) {
+                final Time time = Time.valueOf( ldt.toLocalTime() );
+                time.setTime( time.getTime() + nanos / 1000000 );
+                return time;
+            }
+            if( hasOffset ) {
+                return Timestamp.from( ldt.toInstant( ZoneOffset.ofTotalSeconds(offset) ) );
+            }
+            return Timestamp.valueOf( ldt );
+        } catch (DateTimeException e) {
+            // out of range field, e.g. month 13
+            return null;
+        }
+    }
+
+    public static Timestamp parseTimestamp(CharSequence text) throws SQLException {
+        final Object value = parse(text);
+        if( value instanceof Timestamp ) return (Timestamp) value;
+        if( value instanceof java.util.Date ) return new Timestamp( ((java.util.Date) value).getTime() );
+        throw new SQLException( String.format("Value '%s' is not a Timestamp", text) );
+    }
+
+    public static Date parseDate(CharSequence text) throws SQLException {
+        final Object value = parse(text);
+        if( value instanceof Date ) return (Date) value;
+        if( value instanceof Timestamp ) return new Date( ((Timestamp) value).getTime() );
+        throw new SQLException( String.format("Value '%s' is not a Date", text) );
+    }
+
+    public static Time parseTime(CharSequence text) throws SQLException {
+        final Object value = parse(text);
+        if( value instanceof Time ) return (Time) value;
+        if( value instanceof Timestamp ) return new Time( ((Timestamp) value).getTime() );
+        throw new SQLException( String.format("Value '%s' is not a Time", text) );
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Unsigned number of count digits at start, before end (the text without its trailing spaces), -1 when there aren't.
+     */
+    private static int digits(CharSequence text, int start, int count, int end) {
+        if( start + count > end ) return -1;
+        int value = 0;
+        for(int i = start; i < start + count; i++) {
+            final char c = text.charAt(i);
+            if( !isDigit(c) ) return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
@@ -14,11 +14,19 @@ package org.leoneti.jdbc;
 
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.leoneti.TraceLog;
 
 public abstract class GenericResultSetMetaData extends TraceLog implements ResultSetMetaData {
 
+    private String[] columnNames = new String[0];
+    private Map<String, Integer> columnIndexes = Collections.emptyMap();
+    private Map<String, Integer> columnIndexesIgnoreCase = Collections.emptyMap();
+
     public GenericResultSetMetaData() {
         super();
     }
@@ -27,6 +35,32 @@ public abstract class GenericResultSetMetaData extends TraceLog implements Resul
         super(trace,clazz);
     }
 
+    /**
+     * Index <-> name table behind getColumnName(int) and findColumn(String), so both are a constant cost per call.
+     */
+    protected void setColumnNames(Collection<String> names) {
+        this.columnNames = names.toArray(new String[names.size()]);
+        this.columnIndexes = new HashMap<String, Integer>(columnNames.length * 2);
+        this.columnIndexesIgnoreCase = new HashMap<String, Integer>(columnNames.length * 2);
+        for (int i = 0; i < columnNames.length; i++) {
+            this.columnIndexes.putIfAbsent(columnNames[i], i + 1);
+            this.columnIndexesIgnoreCase.putIfAbsent(columnNames[i].toLowerCase(), i + 1);
+        }
+    }
+
+    /**
+     * 1-based index of columnLabel, the exact name first and then ignoring the case.
+     */
+    public int findColumn(String columnLabel) throws SQLException {
+        logMethod("findColumn", columnLabel);
+        Integer index = columnIndexes.get(columnLabel);
+        if (index == null && columnLabel != null)
+            index = columnIndexesIgnoreCase.get(columnLabel.toLowerCase());
+        if (index == null)
+            throw new SQLException(String.format("Column %s not found", columnLabel));
+        return index;
+    }
+
     @Override
     public <T> T unwrap(Class<T> iface) throws SQLException {
         logMethod("unwrap", iface);
@@ -96,7 +130,9 @@ public abstract class GenericResultSetMetaData extends TraceLog implements Resul
     @Override
     public String getColumnName(int column) throws SQLException {
         logMethod("getColumnName", column);
-        return null;
+        if (column < 1 || column > columnNames.length)
+            throw new SQLException(String.format("Column index %d out of range", column));
+        return columnNames[column - 1];
     }
 
     @Override
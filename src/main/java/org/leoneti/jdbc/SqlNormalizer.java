@@ -0,0 +1,113 @@
+/*****************************************************************************************
+* Copyright (C) 2023-2026  Ricardo Leoneti                           Date: 2026-10-17
+*
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v2.0
+* which accompanies this distribution, and is available at
+* https://www.eclipse.org/org/documents/epl-2.0/EPL-2.0.html
+*
+*****************************************************************************************/
+package org.leoneti.jdbc;
+
+/**
+ * Stateless (thread-safe) normalization of SQL text, the same query written differently gets the same text:
+ * -- and /* *&#47; comments are removed (not the MySQL /*! *&#47; ones, they are executed), runs of white space become one
+ * space, the trailing ; are removed and optionally the text is upper cased.
+ * The 'string' literals, "quoted" and `quoted` identifiers and $tag$ dollar quoted strings are kept as they are.
+ * When the dialects disagree the text is kept: a -- comment needs a white space after it (MySQL reads 1--1 as 1 - -1),
+ * and a \ escapes the next character in '' and "" (MySQL), so a literal ending in \ keeps the rest of the text as is.
+ */
+public final class SqlNormalizer {
+
+    private SqlNormalizer() {
+    }
+
+    /**
+     * @param ignoreCase upper cases the text out of the literals and quoted identifiers
+     */
+    public static String normalize(CharSequence sql, boolean ignoreCase) {
+        if( sql == null ) return null;
+        final int len = sql.length();
+        final StringBuilder sb = new StringBuilder(len);
+        boolean space = false;
+        int p = 0;
+        while( p < len ) {
+            final char c = sql.charAt(p);
+            if( c <= ' ' ) {
+                space = true;
+                p++;
+                continue;
+            }
+            if( c == '-' && p + 1 < len && sql.charAt(p + 1) == '-' && (p + 2 >= len || sql.charAt(p + 2) <= ' ') ) {
+                p += 2;
+                while( p < len && sql.charAt(p) != '\n' && sql.charAt(p) != '\r' ) p++;
+                space = true;
+                continue;
+            }
+            if( c == '/' && p + 1 < len && sql.charAt(p + 1) == '*' && !(p + 2 < len && sql.charAt(p + 2) == '!') ) {
+                p += 2;
+                while( p < len && !(sql.charAt(p) == '*' && p + 1 < len && sql.charAt(p + 1) == '/') ) p++;
+                p = Math.min(len, p + 2);
+                space = true;
+                continue;
+            }
+            if( space && sb.length() > 0 ) sb.append(' ');
+            space = false;
+            final int end;
+            if( c == '\'' || c == '"' || c == '`' ) {
+                end = quoted(sql, p, c);
+            } else if( c == '$' ) {
+                end = dollarQuoted(sql, p);
+            } else {
+                end = -1;
+            }
+            if( end > 0 ) {
+                sb.append(sql, p, end);
+                p = end;
+            } else {
+                sb.append( ignoreCase ? Character.toUpperCase(c) : c );
+                p++;
+            }
+        }
+        int n = sb.length();
+        while( n > 0 && (sb.charAt(n - 1) == ';' || sb.charAt(n - 1) == ' ') ) n--;
+        sb.setLength(n);
+        return sb.toString();
+    }
+
+    /**
+     * End of the text quoted by q starting at p, a doubled q is part of it and in '' and "" the character after a \.
+     */
+    private static int quoted(CharSequence sql, int p, char q) {
+        final int len = sql.length();
+        int i = p + 1;
+        while( i < len ) {
+            final char c = sql.charAt(i++);
+            if( c == '\\' && q != '`' ) {
+                i++;
+            } else if( c == q ) {
+                if( i < len && sql.charAt(i) == q ) {
+                    i++;
+                } else {
+                    return i;
+                }
+            }
+        }
+        return len;
+    }
+
+    /**
+     * End of the $tag$ ... $tag$ string starting at p, -1 when p doesn't start one ($1 parameters, V$SESSION names).
+     */
+    private static int dollarQuoted(CharSequence sql, int p) {
+        final int len = sql.length();
+        if( p > 0 && (Character.isLetterOrDigit(sql.charAt(p - 1)) || sql.charAt(p - 1) == '_') ) return -1;
+        int i = p + 1;
+        if( i < len && Character.isDigit(sql.charAt(i)) ) return -1;
+        while( i < len && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_') ) i++;
+        if( i >= len || sql.charAt(i) != '$' ) return -1;
+        final String tag = sql.subSequence(p, i + 1).toString();
+        final int end = sql.toString().indexOf(tag, i + 1);
+        return end < 0 ? len : end + tag.length();
+    }
+}
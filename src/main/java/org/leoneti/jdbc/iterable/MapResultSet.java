@@ -12,19 +12,17 @@
 *****************************************************************************************/
 package org.leoneti.jdbc.iterable;
 
-import static org.leoneti.jdbc.redash.RedashResultSet.datetime;
-
 import java.math.BigDecimal;
 import java.sql.JDBCType;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.sql.Types;
-import java.text.ParseException;
 import java.util.Iterator;
 import java.util.Map;
 
 import org.json.JSONObject;
+import org.leoneti.jdbc.DateTimeParser;
 import org.leoneti.jdbc.GenericResultSet;
 
 public class MapResultSet extends GenericResultSet {
@@ -75,11 +73,7 @@ public class MapResultSet extends GenericResultSet {
         logMethod("getObject", columnLabel);
         readObject(columnLabel);
         if (this.lastObj != null && this.metadata.getColumnType(columnLabel) == Types.TIMESTAMP && !(this.lastObj instanceof Timestamp)) {
-            try {
-                this.lastObj = new Timestamp(datetime.parse(this.lastObj.toString()).getTime());
-            } catch (ParseException e) {
-                throw new SQLException(e);
-            }
+            this.lastObj = DateTimeParser.parseTimestamp(this.lastObj.toString());
         }
         return this.lastObj;
     }
@@ -94,14 +88,10 @@ public class MapResultSet extends GenericResultSet {
     @Override
     public Timestamp getTimestamp(String columnLabel) throws SQLException {
         logMethod("getTimestamp", columnLabel);
-        try {
-            Object obj = readObject(columnLabel);
-            if (obj instanceof Timestamp)
-                return (Timestamp) obj;
-            return new Timestamp(datetime.parse(obj.toString()).getTime());
-        } catch (ParseException e) {
-            throw new SQLException(e);
-        }
+        Object obj = readObject(columnLabel);
+        if (obj == null || obj instanceof Timestamp)
+            return (Timestamp) obj;
+        return DateTimeParser.parseTimestamp(obj.toString());
     }
 
     @Override
@@ -210,6 +200,11 @@ public class MapResultSet extends GenericResultSet {
         return getBoolean(metadata.getColumnName(columnIndex));
     }
 
+    @Override
+    public int findColumn(String columnLabel) throws SQLException {
+        return metadata.findColumn(columnLabel);
+    }
+
     @Override
     public boolean wasNull() throws SQLException {
         return this.lastObj == null;
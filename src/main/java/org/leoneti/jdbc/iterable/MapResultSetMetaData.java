@@ -27,6 +27,7 @@ public class MapResultSetMetaData extends GenericResultSetMetaData {
     public MapResultSetMetaData(boolean trace, Map<String, JDBCType> maptypes) {
         super(trace, MapResultSetMetaData.class);
         this.maptypes = maptypes;
+        setColumnNames(maptypes.keySet());
     }
 
     @Override
@@ -34,11 +35,6 @@ public class MapResultSetMetaData extends GenericResultSetMetaData {
         return maptypes.size();
     }
 
-    @Override
-    public String getColumnName(int column) throws SQLException {
-        return maptypes.keySet().toArray()[column - 1].toString();
-    }
-
     @Override
     public String getColumnLabel(int column) throws SQLException {
         return getColumnName(column);
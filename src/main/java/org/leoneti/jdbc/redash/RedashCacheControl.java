@@ -12,45 +12,454 @@
 *****************************************************************************************/
 package org.leoneti.jdbc.redash;
 
-import java.util.HashMap;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
+import org.json.JSONObject;
 import org.leoneti.Utils;
+import org.leoneti.jdbc.SqlNormalizer;
 
+/**
+ * result_id of the queries run by a connection, LRU bounded to maxEntries, the expired entries are removed by a
+ * background sweep. All the methods are thread-safe.
+ * When maxPayloadBytes &gt; 0 the downloaded results are kept too (compressed, see RedashPayloadCodec) up to that many bytes,
+ * a hit then needs no request to Redash.
+ * With setResultCache() the downloaded results are kept by query_result_id as well, for any query that gets them.
+ * With setDiskCache() the entries and payloads are also written to files, see RedashDiskCache.
+ * A cache belongs to a connection, or with resultSet.cache.scope=driver to all the connections of the same identity().
+ * With setStaleWhileRevalidate() an expired entry is still returned during a grace time, startRevalidation() tells which
+ * caller refreshes it.
+ * The entries have their own ttl (see setTtl() and setRuntimeTtl()), the ones of jobs shorter than setMinRuntime() aren't
+ * kept and above maxEntries (or maxPayloadBytes) the entry evicted is the cheapest to run again among the least recently used.
+ * With setRefreshAhead() the entries hit often are run again (by their Refresher) shortly before they expire.
+ * The jobs in flight are registered under the same key, so the identical queries submitted meanwhile wait for that job
+ * instead of running their own (see joinFlight()).
+ */
 public class RedashCacheControl {
 
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+    
+    public static final int DEFAULT_REFRESH_MIN_HITS = 2;
+    
+    public static final int DEFAULT_REFRESH_MAX_CONCURRENT = 2;
+    
+    public static final int DEFAULT_MAX_TTL = 86400;
+    
+    /**
+     * Least recently used entries compared to choose the one evicted.
+     */
+    private static final int EVICTION_SAMPLE = 8;
+
+    /**
+     * Runs a query again and add()s its new result_id, for the refresh ahead.
+     */
+    public interface Refresher {
+        void refresh(String catalog, String query) throws SQLException;
+    }
+
     class CachedResult {
         public CachedResult(int result_id) {
             this.result_id = result_id;
         }
         public long executionTime = System.currentTimeMillis();
+        public int ttl = cache_ttl;
+        public long runtime;
         public int result_id;
+        public byte[] payload;
+        public boolean revalidating;
+        public int hits;
+        public String catalog;
+        public String query;
+        public Refresher refresher;
     }
     
-    private Map<String,CachedResult> cache = new HashMap<String,CachedResult>(50);
-    private RedashConnection con;
+    private final Map<String,CachedResult> cache;
+    private final ConcurrentMap<String,CompletableFuture<Integer>> inFlight = new ConcurrentHashMap<String,CompletableFuture<Integer>>();
+    private String identity;
     private int cache_ttl;
+    private long maxPayloadBytes;
+    private long payloadBytes = 0;
+    private ScheduledFuture<?> sweeper;
+    private RedashDiskCache disk;
+    private RedashResultCache results;
+    private boolean ignoreCase = false;
+    private int grace = 0;
+    private int refreshAhead = 0;
+    private int refreshMinHits = DEFAULT_REFRESH_MIN_HITS;
+    private int refreshMaxConcurrent = DEFAULT_REFRESH_MAX_CONCURRENT;
+    private final AtomicInteger refreshing = new AtomicInteger();
+    private ScheduledFuture<?> refresherTask;
+    private final Map<String,Integer> ttls = new ConcurrentHashMap<String,Integer>();
+    private final Map<String,Long> runtimes;
+    private long minRuntime = 0;
+    private int runtimeFactor = 0;
+    private int maxTtl = DEFAULT_MAX_TTL;
+    
+    /**
+     * @param identity server and user of the cached results, see identity()
+     */
+    public RedashCacheControl(String identity, int cache_ttl) {
+        this(identity, cache_ttl, DEFAULT_MAX_ENTRIES, 0);
+    }
     
-    public RedashCacheControl(RedashConnection con, int cache_ttl) {
-        this.con = con;
+    public RedashCacheControl(String identity, int cache_ttl, final int maxEntries, long maxPayloadBytes) {
+        this.identity = identity;
         this.cache_ttl = cache_ttl;
+        this.maxPayloadBytes = maxPayloadBytes;
+        // access order: the least recently used entry is the eldest
+        this.cache = new LinkedHashMap<String,CachedResult>(64, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String,CachedResult> eldest) {
+                if( size() <= maxEntries ) return false;
+                releasePayload( remove( cheapest(this, false).getKey() ) );
+                return false;
+            }
+        };
+        this.runtimes = new LinkedHashMap<String,Long>(64, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String,Long> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        if( cache_ttl > 0 ) {
+            final long period = Math.max(1, Math.min(cache_ttl, 60));
+            this.sweeper = RedashThreads.scheduler().scheduleWithFixedDelay( new Sweeper(this, false), period, period, TimeUnit.SECONDS );
+        }
+    }
+    
+    /**
+     * The sweep (or refresh ahead) doesn't keep the cache reachable, it stops by itself when the connection is gone without close().
+     */
+    private static class Sweeper implements Runnable {
+        private final WeakReference<RedashCacheControl> ref;
+        private final boolean refreshAhead;
+        Sweeper(RedashCacheControl cacheControl, boolean refreshAhead) {
+            this.ref = new WeakReference<RedashCacheControl>(cacheControl);
+            this.refreshAhead = refreshAhead;
+        }
+        @Override
+        public void run() {
+            final RedashCacheControl cacheControl = ref.get();
+            if( cacheControl == null ) throw new IllegalStateException("cache collected"); // cancels the schedule
+            if( refreshAhead ) {
+                cacheControl.refreshAhead();
+            } else {
+                cacheControl.cleanOlderCache();
+            }
+        }
     }
     
     public boolean checkValidCache(CachedResult cache) {
         if( cache == null ) return false;
-        if( System.currentTimeMillis() - cache.executionTime > cache_ttl*1000 )
+        if( System.currentTimeMillis() - cache.executionTime > (cache.ttl + grace)*1000L )
             return false;
         
         return true;
     }
     
-    public int checkAndGetCachedResult(String query) {
-        try {
-            final String queryId = String.format( "%s:%s", this.con.getCatalog() ,Utils.md5(query) );
+    private boolean isStale(CachedResult cache) {
+        return System.currentTimeMillis() - cache.executionTime > cache.ttl*1000L;
+    }
+    
+    private long expiration(CachedResult cache) {
+        return cache.executionTime + (cache.ttl + grace)*1000L;
+    }
+    
+    /**
+     * ttl of the results of the data source catalog, instead of the one of the cache.
+     */
+    public void setTtl(String catalog, int seconds) {
+        this.ttls.put(catalog, seconds);
+    }
+    
+    /**
+     * The results of jobs run in less than millis aren't cached, they can't evict the expensive ones.
+     */
+    public void setMinRuntime(long millis) {
+        this.minRuntime = millis;
+    }
+    
+    /**
+     * A result is kept factor times the runtime of its job when that's longer than its ttl, up to maxTtl seconds.
+     */
+    public void setRuntimeTtl(int factor, int maxTtl) {
+        this.runtimeFactor = factor;
+        this.maxTtl = maxTtl;
+    }
+    
+    /**
+     * Millis the jobs of query usually take (moving average of the last ones), -1 when unknown.
+     */
+    public long expectedRuntime(String catalog, String query) {
+        final String queryId = key(catalog, query);
+        synchronized( this.runtimes ) {
+            final Long runtime = this.runtimes.get(queryId);
+            return runtime == null ? -1 : runtime;
+        }
+    }
+    
+    /**
+     * The job of query took runtime millis.
+     */
+    public void learnRuntime(String catalog, String query, long runtime) {
+        final String queryId = key(catalog, query);
+        synchronized( this.runtimes ) {
+            final Long previous = this.runtimes.get(queryId);
+            this.runtimes.put(queryId, previous == null ? runtime : (previous * 3 + runtime) / 4);
+        }
+    }
+    
+    private int ttl(String catalog, long runtime) {
+        final Integer ttl = this.ttls.get(catalog);
+        int seconds = ttl != null ? ttl : cache_ttl;
+        if( this.runtimeFactor > 0 && runtime > 0 ) {
+            seconds = (int) Math.max(seconds, Math.min(this.maxTtl, runtime * this.runtimeFactor / 1000));
+        }
+        return seconds;
+    }
+    
+    /**
+     * The entry (with a payload when payloads) cheapest to lose among the least recently used ones: the shortest job,
+     * for a payload the shortest job per byte kept. Null when there is no such entry.
+     */
+    private static Map.Entry<String,CachedResult> cheapest(Map<String,CachedResult> map, boolean payloads) {
+        Map.Entry<String,CachedResult> victim = null;
+        int sampled = 0;
+        for(Map.Entry<String,CachedResult> entry : map.entrySet()) {
+            final CachedResult cache = entry.getValue();
+            if( payloads && cache.payload == null ) continue;
+            if( victim == null ) {
+                victim = entry;
+            } else {
+                final CachedResult cheapest = victim.getValue();
+                if( payloads ? cache.runtime * cheapest.payload.length < cheapest.runtime * cache.payload.length
+                             : cache.runtime < cheapest.runtime ) {
+                    victim = entry;
+                }
+            }
+            if( ++sampled >= EVICTION_SAMPLE ) break;
+        }
+        return victim;
+    }
+    
+    /**
+     * The entries older than the ttl are still returned for seconds more, while they are run again in the background.
+     */
+    public void setStaleWhileRevalidate(int seconds) {
+        this.grace = Math.max(0, seconds);
+    }
+    
+    /**
+     * True when the entry of query is stale and no one is refreshing it yet: the caller must run it again and add() it,
+     * then call endRevalidation() whatever the outcome.
+     */
+    public boolean startRevalidation(String catalog, String query) {
+        if( this.grace <= 0 ) return false;
+        final String queryId = key(catalog, query);
+        synchronized( this.cache ) {
+            final CachedResult cache = this.cache.get(queryId);
+            if( cache == null || cache.revalidating || !isStale(cache) ) return false;
+            cache.revalidating = true;
+            return true;
+        }
+    }
+    
+    /**
+     * The refresh of query ended: when it failed (the entry wasn't replaced) the next caller of startRevalidation() retries it.
+     */
+    public void endRevalidation(String catalog, String query) {
+        final String queryId = key(catalog, query);
+        synchronized( this.cache ) {
             final CachedResult cache = this.cache.get(queryId);
-            if( checkValidCache(cache) ) {
+            if( cache != null ) cache.revalidating = false;
+        }
+    }
+    
+    /**
+     * The entries hit at least minHits times since they were added are run again in the last seconds of their ttl, at
+     * most maxConcurrent at once (the most hit first) on RedashThreads.background(). Only the entries added with a
+     * Refresher are refreshed.
+     */
+    public void setRefreshAhead(int seconds, int minHits, int maxConcurrent) {
+        if( this.refresherTask != null ) this.refresherTask.cancel(false);
+        this.refresherTask = null;
+        this.refreshAhead = seconds;
+        this.refreshMinHits = Math.max(1, minHits);
+        this.refreshMaxConcurrent = Math.max(1, maxConcurrent);
+        if( seconds > 0 && cache_ttl > 0 ) {
+            final long period = Math.max(1, Math.min(seconds, cache_ttl) / 2);
+            this.refresherTask = RedashThreads.scheduler().scheduleWithFixedDelay( new Sweeper(this, true), period, period, TimeUnit.SECONDS );
+        }
+    }
+    
+    private void refreshAhead() {
+        final long now = System.currentTimeMillis();
+        final List<CachedResult> hot = new ArrayList<CachedResult>();
+        synchronized( this.cache ) {
+            for(CachedResult cache : this.cache.values()) {
+                final long remaining = cache.executionTime + cache.ttl*1000L - now;
+                if( cache.refresher != null && !cache.revalidating && cache.hits >= this.refreshMinHits
+                        && remaining > 0 && remaining <= this.refreshAhead*1000L ) {
+                    hot.add(cache);
+                }
+            }
+            Collections.sort(hot, new Comparator<CachedResult>() {
+                @Override
+                public int compare(CachedResult a, CachedResult b) {
+                    return Integer.compare(b.hits, a.hits);
+                }
+            });
+            final int free = Math.max(0, this.refreshMaxConcurrent - this.refreshing.get());
+            if( hot.size() > free ) hot.subList(free, hot.size()).clear();
+            for(CachedResult cache : hot) cache.revalidating = true;
+        }
+        for(final CachedResult cache : hot) {
+            this.refreshing.incrementAndGet();
+            RedashThreads.background().execute( new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        cache.refresher.refresh(cache.catalog, cache.query);
+                    } catch (Exception e) {
+                        RedashDriver.log.log(Level.WARNING, e.getMessage(), e);
+                    } finally {
+                        // a failed one is refreshed again by the next sweep (or stale caller)
+                        synchronized( RedashCacheControl.this.cache ) {
+                            cache.revalidating = false;
+                        }
+                        refreshing.decrementAndGet();
+                    }
+                }
+            });
+        }
+    }
+    
+    /**
+     * Payloads are kept (in memory or on disk).
+     */
+    public boolean keepsPayloads() {
+        return this.maxPayloadBytes > 0 || this.disk != null;
+    }
+    
+    /**
+     * Host and token hash: the results a cache can share are the ones the same user gets from the same server.
+     */
+    public static String identity(String host, String token) throws NoSuchAlgorithmException {
+        return String.format( "%s|%s", host, Utils.md5(token) );
+    }
+    
+    /**
+     * The query is normalized (see SqlNormalizer): the same query written with other spaces or comments is a hit.
+     */
+    private String key(String catalog, String query) {
+        return String.format( "%s:%s", catalog, Utils.hash128( SqlNormalizer.normalize(query, this.ignoreCase) ) );
+    }
+    
+    /**
+     * Queries differing only in the case of their text (out of literals and quoted identifiers) share their entry.
+     */
+    public void setIgnoreCase(boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+    }
+    
+    /**
+     * Keeps the entries in dir too, read back when they are not in memory (after a restart), up to maxBytes of files.
+     */
+    public void setDiskCache(File dir, long maxBytes) throws IOException {
+        this.disk = new RedashDiskCache(dir, maxBytes);
+    }
+    
+    /**
+     * Keeps the results downloaded by query_result_id, up to maxBytes compressed, with no ttl (they never change).
+     */
+    public void setResultCache(long maxBytes) {
+        this.results = maxBytes > 0 ? new RedashResultCache(maxBytes) : null;
+    }
+    
+    public boolean hasResultCache() {
+        return this.results != null;
+    }
+    
+    /**
+     * The payload of result_id when it is in the result cache, null otherwise.
+     */
+    public JSONObject getResult(int result_id) {
+        if( this.results == null ) return null;
+        try {
+            return this.results.get(result_id);
+        } catch (Exception e) {
+            RedashDriver.log.log(Level.SEVERE, e.getMessage(), e);
+        }
+        return null;
+    }
+    
+    public void putResult(int result_id, JSONObject jo) {
+        if( this.results == null ) return;
+        try {
+            this.results.put(result_id, jo);
+        } catch (Exception e) {
+            RedashDriver.log.log(Level.SEVERE, e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Files of different servers and tokens never mix.
+     */
+    private String fileKey(String queryId) {
+        return Utils.hash128( String.format("%s|%s", this.identity, queryId) );
+    }
+    
+    /**
+     * The valid entry of queryId from memory or else from disk, null when there is none.
+     */
+    private CachedResult lookup(String queryId) throws Exception {
+        CachedResult cache;
+        synchronized( this.cache ) {
+            cache = this.cache.get(queryId);
+            if( cache != null ) cache.hits++;
+        }
+        if( checkValidCache(cache) ) return cache;
+        if( this.disk == null ) return null;
+        final RedashDiskCache.Entry entry = this.disk.read( fileKey(queryId) );
+        if( entry == null ) return null;
+        cache = new CachedResult(entry.resultId);
+        cache.executionTime = entry.executionTime;
+        cache.ttl = (int) ((entry.expiration - entry.executionTime) / 1000) - this.grace;
+        if( !checkValidCache(cache) ) return null;
+        synchronized( this.cache ) {
+            releasePayload( this.cache.put(queryId, cache) );
+            if( entry.payload != null && entry.payload.length <= this.maxPayloadBytes ) {
+                cache.payload = entry.payload;
+                this.payloadBytes += entry.payload.length;
+                trimPayloads();
+            }
+        }
+        return cache;
+    }
+    
+    public int checkAndGetCachedResult(String catalog, String query) {
+        try {
+            final CachedResult cache = lookup( key(catalog, query) );
+            if( cache != null ) {
                 return cache.result_id;
             }
         } catch (Exception e) {
@@ -59,28 +468,152 @@ public class RedashCacheControl {
         return -1;
     }
     
-    public void add(String query, int result_id) {
+    /**
+     * The whole result of query when it is cached with its payload, null otherwise.
+     */
+    public JSONObject checkAndGetCachedPayload(String catalog, String query) {
+        if( !keepsPayloads() ) return null;
+        try {
+            final String queryId = key(catalog, query);
+            final CachedResult cache = lookup(queryId);
+            if( cache == null ) return null;
+            byte[] payload;
+            synchronized( this.cache ) {
+                payload = cache.payload;
+            }
+            if( payload == null && this.disk != null ) {
+                // over the memory budget, the file may still have it
+                final RedashDiskCache.Entry entry = this.disk.read( fileKey(queryId) );
+                if( entry != null && entry.resultId == cache.result_id ) payload = entry.payload;
+            }
+            return payload == null ? null : RedashPayloadCodec.decode(payload);
+        } catch (Exception e) {
+            RedashDriver.log.log(Level.SEVERE, e.getMessage(), e);
+        }
+        return null;
+    }
+    
+    public void add(String catalog, String query, int result_id) {
+        add(catalog, query, result_id, -1, null);
+    }
+    
+    /**
+     * @param runtime millis the job took, -1 when unknown
+     * @param refresher runs the query again for the refresh ahead, null when it can't
+     */
+    public void add(String catalog, String query, int result_id, long runtime, Refresher refresher) {
+        if( runtime >= 0 && runtime < this.minRuntime ) return;
         try {
-            final String queryId = String.format( "%s:%s", this.con.getCatalog() ,Utils.md5(query) );
-            this.cache.put(queryId, new CachedResult(result_id) );
+            final String queryId = key(catalog, query);
+            final CachedResult cache = new CachedResult(result_id);
+            cache.ttl = ttl(catalog, runtime);
+            cache.runtime = Math.max(0, runtime);
+            if( refresher != null && this.refreshAhead > 0 ) {
+                cache.catalog = catalog;
+                cache.query = query;
+                cache.refresher = refresher;
+            }
+            synchronized( this.cache ) {
+                releasePayload( this.cache.put(queryId, cache) );
+            }
+            if( this.disk != null ) {
+                this.disk.write( fileKey(queryId), cache.executionTime, expiration(cache), result_id, null );
+            }
         } catch (Exception e) {
             RedashDriver.log.log(Level.SEVERE, e.getMessage(), e);
         }
     }
     
-    @Override
-    protected void finalize() throws Throwable {
-        cleanOlderCache();
+    /**
+     * Registers flight as the job of query, unless one is already running: that one is returned and the caller waits for
+     * its result_id. When null is returned the caller runs the job, completes flight and calls land().
+     */
+    public CompletableFuture<Integer> joinFlight(String catalog, String query, CompletableFuture<Integer> flight) {
+        return this.inFlight.putIfAbsent( key(catalog, query), flight );
+    }
+    
+    /**
+     * Removes flight, already completed, the next identical query finds its result in the cache.
+     */
+    public void land(String catalog, String query, CompletableFuture<Integer> flight) {
+        this.inFlight.remove( key(catalog, query), flight );
+    }
+    
+    /**
+     * Keeps the downloaded result jo of a query already added, the least recently used payloads are dropped above maxPayloadBytes.
+     */
+    public void addPayload(String catalog, String query, JSONObject jo) {
+        if( !keepsPayloads() ) return;
+        try {
+            final String queryId = key(catalog, query);
+            final byte[] payload = RedashPayloadCodec.encode(jo);
+            final CachedResult cache;
+            synchronized( this.cache ) {
+                cache = this.cache.get(queryId);
+                if( cache == null ) return;
+                if( payload.length <= this.maxPayloadBytes ) {
+                    releasePayload(cache);
+                    cache.payload = payload;
+                    this.payloadBytes += payload.length;
+                    trimPayloads();
+                }
+            }
+            if( this.disk != null ) {
+                this.disk.write( fileKey(queryId), cache.executionTime, expiration(cache), cache.result_id, payload );
+            }
+        } catch (Exception e) {
+            RedashDriver.log.log(Level.SEVERE, e.getMessage(), e);
+        }
+    }
+
+    private void trimPayloads() {
+        while( this.payloadBytes > this.maxPayloadBytes ) {
+            final Map.Entry<String,CachedResult> victim = cheapest(this.cache, true);
+            if( victim == null ) break;
+            releasePayload( victim.getValue() );
+        }
+    }
+
+    private void releasePayload(CachedResult cache) {
+        if( cache != null && cache.payload != null ) {
+            this.payloadBytes -= cache.payload.length;
+            cache.payload = null;
+        }
+    }
+
+    public int size() {
+        synchronized( this.cache ) {
+            return this.cache.size();
+        }
     }
 
     public void cleanOlderCache() {
-        final Iterator<Map.Entry<String,CachedResult>> iterator = this.cache.entrySet().iterator();
-        while (iterator.hasNext()) {
-            final Map.Entry<String,CachedResult> entry = iterator.next();
-            if( !checkValidCache( entry.getValue() ) ) {
-                iterator.remove();
+        synchronized( this.cache ) {
+            final Iterator<Map.Entry<String,CachedResult>> iterator = this.cache.entrySet().iterator();
+            while (iterator.hasNext()) {
+                final Map.Entry<String,CachedResult> entry = iterator.next();
+                if( !checkValidCache( entry.getValue() ) ) {
+                    releasePayload( entry.getValue() );
+                    iterator.remove();
+                }
             }
         }
     }
 
+    public void close() {
+        if( this.sweeper != null ) {
+            this.sweeper.cancel(false);
+            this.sweeper = null;
+        }
+        if( this.refresherTask != null ) {
+            this.refresherTask.cancel(false);
+            this.refresherTask = null;
+        }
+        synchronized( this.cache ) {
+            this.cache.clear();
+            this.payloadBytes = 0;
+        }
+        if( this.results != null ) this.results.clear();
+    }
+
 }
@@ -0,0 +1,376 @@
+/*****************************************************************************************
+* Copyright (C) 2023-2026  Ricardo Leoneti                           Date: 2026-10-17
+*
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v2.0
+* which accompanies this distribution, and is available at
+* https://www.eclipse.org/org/documents/epl-2.0/EPL-2.0.html
+*
+*****************************************************************************************/
+package org.leoneti.jdbc.redash;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Date;
+import java.sql.JDBCType;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.json.JSONObject;
+import org.leoneti.jdbc.DateTimeParser;
+
+/**
+ * Values of one result column, decoded once when the rows are loaded into primitive arrays
+ * (int[]/long[]/double[]/bits) with a null bitmap, equal strings share one String (interned through a HashMap).
+ * getString() gives back the text of the value sent by Redash: add() returns false when a value doesn't fit the column
+ * storage in a form that keeps it ("00123", 2^70 or 1.0 in an integer column), the caller then moves the column to asObjectColumn().
+ */
+abstract class RedashColumn {
+
+    protected long[] nulls;
+    protected int size = 0;
+
+    protected RedashColumn(int capacity) {
+        this.nulls = new long[ (Math.max(capacity, 1) + 63) >>> 6 ];
+    }
+
+    public static RedashColumn create(JDBCType type, int capacity) {
+        if( type == null ) return new ObjectColumn(capacity);
+        switch( type ) {
+            case TINYINT:
+            case SMALLINT: return new IntColumn(capacity);
+            case INTEGER:
+            case BIGINT: return new LongColumn(capacity);
+            case DOUBLE:
+            case FLOAT: return new DoubleColumn(capacity);
+            case REAL:
+            case DECIMAL:
+            case NUMERIC: return new DecimalColumn(capacity);
+            case BOOLEAN: return new BooleanColumn(capacity);
+            case JAVA_OBJECT: return new ObjectColumn(capacity);
+            default:
+                return new StringColumn(capacity);
+        }
+    }
+
+    /**
+     * Column of a type inferred from a sample of the rows, add() returns false for a value of another type.
+     */
+    public static RedashColumn createInferred(JDBCType type, int capacity) {
+        switch( type ) {
+            case TIMESTAMP:
+            case DATE:
+            case TIME: return new TemporalColumn(type, capacity);
+            default:
+                return create(type, capacity);
+        }
+    }
+
+    public int size() { return size; }
+
+    public boolean isNull(int row) {
+        return (nulls[row >>> 6] & (1L << row)) != 0;
+    }
+
+    public boolean add(Object value) {
+        ensureCapacity(size + 1);
+        if( value == null || JSONObject.NULL.equals(value) ) {
+            nulls[size >>> 6] |= 1L << size;
+        } else if( !set(size, value) ) {
+            return false;
+        }
+        size++;
+        return true;
+    }
+
+    /**
+     * Empties the column keeping the arrays, for the next block of a streamed result.
+     */
+    public void clear() {
+        Arrays.fill(nulls, 0L);
+        size = 0;
+    }
+
+    public RedashColumn asObjectColumn() {
+        final ObjectColumn col = new ObjectColumn(capacity());
+        for(int row=0; row < size; row++) {
+            col.add( isNull(row) ? null : get(row) );
+        }
+        return col;
+    }
+
+    protected void ensureCapacity(int minCapacity) {
+        if( minCapacity > capacity() ) {
+            final int newCapacity = Math.max(minCapacity, capacity() + (capacity() >> 1) + 1);
+            nulls = Arrays.copyOf(nulls, (newCapacity + 63) >>> 6);
+            grow(newCapacity);
+        }
+    }
+
+    protected abstract int capacity();
+
+    protected abstract void grow(int newCapacity);
+
+    protected abstract boolean set(int row, Object value);
+
+    public abstract Object get(int row);
+
+    public String getString(int row) {
+        return get(row).toString();
+    }
+
+    public long getLong(int row) throws SQLException {
+        return toNumber(get(row)).longValue();
+    }
+
+    public double getDouble(int row) throws SQLException {
+        return toNumber(get(row)).doubleValue();
+    }
+
+    public BigDecimal getBigDecimal(int row) throws SQLException {
+        final Object value = get(row);
+        if( value instanceof BigDecimal ) return (BigDecimal) value;
+        if( value instanceof Double || value instanceof Float ) return BigDecimal.valueOf( ((Number) value).doubleValue() );
+        return new BigDecimal( value.toString() );
+    }
+
+    public boolean getBoolean(int row) throws SQLException {
+        final Object value = get(row);
+        if( value instanceof Boolean ) return (Boolean) value;
+        if( "true".equalsIgnoreCase(value.toString()) ) return true;
+        if( "false".equalsIgnoreCase(value.toString()) ) return false;
+        throw new SQLException( String.format("Value '%s' is not a Boolean", value) );
+    }
+
+    protected static Number toNumber(Object value) throws SQLException {
+        if( value instanceof Number ) return (Number) value;
+        try {
+            return new BigDecimal( value.toString().trim() );
+        } catch (NumberFormatException e) {
+            throw new SQLException( String.format("Value '%s' is not a Number", value), e );
+        }
+    }
+
+    /**
+     * Numbers sent as text are accepted, like JSONObject.getNumber() does.
+     */
+    protected static Number parseNumber(Object value) {
+        if( value instanceof Number ) return (Number) value;
+        if( value instanceof String ) {
+            try {
+                return new BigDecimal( ((String) value).trim() );
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The long value is the value, written the same: fractions, exponents, values out of the long range and
+     * numeric strings written otherwise ("00123", "+1") aren't.
+     */
+    protected static Long exactLong(Object value, Number n) {
+        final Long l;
+        if( n instanceof Integer || n instanceof Long || n instanceof Short || n instanceof Byte ) {
+            l = n.longValue();
+        } else if( n instanceof BigInteger ) {
+            l = ((BigInteger) n).bitLength() < 64 ? n.longValue() : null;
+        } else if( n instanceof BigDecimal && ((BigDecimal) n).scale() == 0 ) {
+            try {
+                l = ((BigDecimal) n).longValueExact();
+            } catch (ArithmeticException e) {
+                return null;
+            }
+        } else {
+            return null;
+        }
+        if( value instanceof String && !value.equals(l.toString()) ) return null;
+        return l;
+    }
+
+    static class IntColumn extends RedashColumn {
+        private int[] values;
+        IntColumn(int capacity) { super(capacity); values = new int[Math.max(capacity, 1)]; }
+        @Override protected int capacity() { return values.length; }
+        @Override protected void grow(int newCapacity) { values = Arrays.copyOf(values, newCapacity); }
+        @Override protected boolean set(int row, Object value) {
+            final Number n = parseNumber(value);
+            final Long l = n == null ? null : exactLong(value, n);
+            if( l == null || l.longValue() != l.intValue() ) return false;
+            values[row] = l.intValue();
+            return true;
+        }
+        @Override public Object get(int row) { return values[row]; }
+        @Override public String getString(int row) { return Integer.toString(values[row]); }
+        @Override public long getLong(int row) { return values[row]; }
+        @Override public double getDouble(int row) { return values[row]; }
+        @Override public BigDecimal getBigDecimal(int row) { return BigDecimal.valueOf(values[row]); }
+    }
+
+    static class LongColumn extends RedashColumn {
+        private long[] values;
+        LongColumn(int capacity) { super(capacity); values = new long[Math.max(capacity, 1)]; }
+        @Override protected int capacity() { return values.length; }
+        @Override protected void grow(int newCapacity) { values = Arrays.copyOf(values, newCapacity); }
+        @Override protected boolean set(int row, Object value) {
+            final Number n = parseNumber(value);
+            final Long l = n == null ? null : exactLong(value, n);
+            if( l == null ) return false;
+            values[row] = l;
+            return true;
+        }
+        @Override public Object get(int row) { return values[row]; }
+        @Override public String getString(int row) { return Long.toString(values[row]); }
+        @Override public long getLong(int row) { return values[row]; }
+        @Override public double getDouble(int row) { return values[row]; }
+        @Override public BigDecimal getBigDecimal(int row) { return BigDecimal.valueOf(values[row]); }
+    }
+
+    /**
+     * getString() writes the values as BigDecimal.valueOf(double) does (1.5, 0.001, 12345678.9), the few written otherwise
+     * by Redash (1, 1.50, 1E+20) keep their text aside.
+     */
+    static class DoubleColumn extends RedashColumn {
+        private double[] values;
+        private String[] texts;
+        DoubleColumn(int capacity) { super(capacity); values = new double[Math.max(capacity, 1)]; }
+        @Override protected int capacity() { return values.length; }
+        @Override protected void grow(int newCapacity) {
+            values = Arrays.copyOf(values, newCapacity);
+            if( texts != null ) texts = Arrays.copyOf(texts, newCapacity);
+        }
+        @Override protected boolean set(int row, Object value) {
+            final Number n = parseNumber(value);
+            if( n == null ) return false;
+            values[row] = n.doubleValue();
+            final String text = value.toString();
+            if( !text.equals( BigDecimal.valueOf(values[row]).toString() ) ) {
+                if( texts == null ) texts = new String[capacity()];
+                texts[row] = text;
+            } else if( texts != null ) {
+                texts[row] = null;
+            }
+            return true;
+        }
+        @Override public void clear() { super.clear(); if( texts != null ) Arrays.fill(texts, null); }
+        @Override public RedashColumn asObjectColumn() {
+            final ObjectColumn col = new ObjectColumn(capacity());
+            for(int row=0; row < size; row++) {
+                col.add( isNull(row) ? null : new BigDecimal(getString(row)) );
+            }
+            return col;
+        }
+        @Override public Object get(int row) { return values[row]; }
+        @Override public String getString(int row) {
+            if( texts != null && texts[row] != null ) return texts[row];
+            return BigDecimal.valueOf(values[row]).toString();
+        }
+        @Override public long getLong(int row) { return (long) values[row]; }
+        @Override public double getDouble(int row) { return values[row]; }
+        @Override public BigDecimal getBigDecimal(int row) { return BigDecimal.valueOf(values[row]); }
+    }
+
+    static class DecimalColumn extends RedashColumn {
+        private BigDecimal[] values;
+        DecimalColumn(int capacity) { super(capacity); values = new BigDecimal[Math.max(capacity, 1)]; }
+        @Override protected int capacity() { return values.length; }
+        @Override protected void grow(int newCapacity) { values = Arrays.copyOf(values, newCapacity); }
+        @Override protected boolean set(int row, Object value) {
+            final Number n = parseNumber(value);
+            if( n == null ) return false;
+            final BigDecimal bd;
+            if( n instanceof BigDecimal ) bd = (BigDecimal) n;
+            else if( n instanceof Double || n instanceof Float ) bd = BigDecimal.valueOf(n.doubleValue());
+            else bd = new BigDecimal(n.toString());
+            if( value instanceof String && !value.equals(bd.toString()) ) return false;
+            values[row] = bd;
+            return true;
+        }
+        @Override public void clear() { super.clear(); Arrays.fill(values, null); }
+        @Override public Object get(int row) { return values[row]; }
+        @Override public BigDecimal getBigDecimal(int row) { return values[row]; }
+    }
+
+    static class BooleanColumn extends RedashColumn {
+        private long[] values;
+        private int capacity;
+        BooleanColumn(int capacity) { super(capacity); this.capacity = Math.max(capacity, 1); values = new long[(this.capacity + 63) >>> 6]; }
+        @Override protected int capacity() { return capacity; }
+        @Override protected void grow(int newCapacity) { capacity = newCapacity; values = Arrays.copyOf(values, (newCapacity + 63) >>> 6); }
+        @Override protected boolean set(int row, Object value) {
+            final boolean b;
+            if( value instanceof Boolean ) b = (Boolean) value;
+            else if( "true".equals(value) ) b = true;
+            else if( "false".equals(value) ) b = false;
+            else return false;
+            if( b ) values[row >>> 6] |= 1L << row;
+            else values[row >>> 6] &= ~(1L << row);
+            return true;
+        }
+        @Override public Object get(int row) { return getBoolean(row); }
+        @Override public String getString(int row) { return Boolean.toString(getBoolean(row)); }
+        @Override public boolean getBoolean(int row) { return (values[row >>> 6] & (1L << row)) != 0; }
+    }
+
+    /**
+     * Equal values share one String while fewer than MAX_DICTIONARY are distinct, the rows still hold a reference each.
+     */
+    static class StringColumn extends RedashColumn {
+        private static final int MAX_DICTIONARY = 1 << 16;
+        private String[] values;
+        private Map<String, String> dictionary = new HashMap<String, String>();
+        StringColumn(int capacity) { super(capacity); values = new String[Math.max(capacity, 1)]; }
+        @Override protected int capacity() { return values.length; }
+        @Override protected void grow(int newCapacity) { values = Arrays.copyOf(values, newCapacity); }
+        @Override protected boolean set(int row, Object value) {
+            final String str = value.toString();
+            if( dictionary != null ) {
+                final String entry = dictionary.putIfAbsent(str, str);
+                values[row] = entry == null ? str : entry;
+                // high cardinality column: stop encoding
+                if( dictionary.size() > MAX_DICTIONARY ) dictionary = null;
+            } else {
+                values[row] = str;
+            }
+            return true;
+        }
+        @Override public void clear() { super.clear(); Arrays.fill(values, null); }
+        @Override public Object get(int row) { return values[row]; }
+        @Override public String getString(int row) { return values[row]; }
+    }
+
+    /**
+     * Text of the values DateTimeParser reads as type (a TIMESTAMP column takes dates too), getTimestamp() etc. parse them.
+     */
+    static class TemporalColumn extends StringColumn {
+        private final JDBCType type;
+        TemporalColumn(JDBCType type, int capacity) { super(capacity); this.type = type; }
+        @Override protected boolean set(int row, Object value) {
+            if( !(value instanceof String) ) return false;
+            final Object temporal = DateTimeParser.parse( (String) value );
+            final boolean fits;
+            switch( type ) {
+                case TIMESTAMP: fits = temporal instanceof Timestamp || temporal instanceof Date; break;
+                case DATE: fits = temporal instanceof Date; break;
+                default: fits = temporal instanceof Time;
+            }
+            return fits && super.set(row, value);
+        }
+    }
+
+    static class ObjectColumn extends RedashColumn {
+        private Object[] values;
+        ObjectColumn(int capacity) { super(capacity); values = new Object[Math.max(capacity, 1)]; }
+        @Override protected int capacity() { return values.length; }
+        @Override protected void grow(int newCapacity) { values = Arrays.copyOf(values, newCapacity); }
+        @Override protected boolean set(int row, Object value) { values[row] = value; return true; }
+        @Override public void clear() { super.clear(); Arrays.fill(values, null); }
+        @Override public Object get(int row) { return values[row]; }
+        @Override public RedashColumn asObjectColumn() { return this; }
+    }
+}
@@ -12,6 +12,9 @@
 *****************************************************************************************/
 package org.leoneti.jdbc.redash;
 
+import java.io.File;
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
 import java.sql.CallableStatement;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
@@ -24,6 +27,7 @@ import java.util.Properties;
 import org.leoneti.jdbc.GenericConnection;
 import org.leoneti.jdbc.redash.commands.RedashDataSourcesCommand;
 import org.leoneti.jdbc.redash.commands.RedashQueryCommand;
+import org.leoneti.jdbc.redash.commands.RedashQueryPool;
 
 public class RedashConnection extends GenericConnection {
 	
@@ -34,10 +38,14 @@ public class RedashConnection extends GenericConnection {
     private Properties info;
     private RedashHttp rh;
     private RedashQueryCommand queryCommand;
+    private RedashQueryPool queryPool;
     private RedashDataSourcesCommand dsCommand;
     private RedashDatabaseMetaData metadata;
     private SQLWarning warning = null;
     private RedashCacheControl cacheControl;
+    private String sharedCacheIdentity;
+    private RedashPollPolicy pollPolicy;
+    private volatile boolean adhocExecution;
     private int resultSetFetchSize;
     
     public RedashHttp getRedashHttp() { return rh; }
@@ -49,6 +57,8 @@ public class RedashConnection extends GenericConnection {
     public String getDsType() { return dsType; }
     
     public RedashQueryCommand getQueryCommand() { return queryCommand; }
+
+    public RedashQueryPool getQueryPool() { return queryPool; }
     
     public RedashDataSourcesCommand getDataSourcesCommand() { return dsCommand; }
         
@@ -60,8 +70,51 @@ public class RedashConnection extends GenericConnection {
     
     public int pageSize() { return Integer.valueOf(info.getProperty(RedashConstants.DRIVER_PROPERTY_PAGE_SIZE, "250")); }
 
+    public boolean isResultSetStreaming() { return Boolean.valueOf(info.getProperty(RedashConstants.DRIVER_PROPERTY_RESULTSET_STREAMING, "false")); }
+
+    public int getTypeSampleRows() { return getIntProperty(RedashConstants.DRIVER_PROPERTY_RESULTSET_TYPE_SAMPLE_ROWS, RedashResultSet.DEFAULT_TYPE_SAMPLE_ROWS); }
+
+    public int getPaginatorPrefetch() { return getIntProperty(RedashConstants.DRIVER_PROPERTY_PAGINATOR_PREFETCH, 1); }
+
+    public int getPaginatorParallelism() { return getIntProperty(RedashConstants.DRIVER_PROPERTY_PAGINATOR_PARALLELISM, 1); }
+
+    public String getPaginatorMode() { return info.getProperty(RedashConstants.DRIVER_PROPERTY_PAGINATOR_MODE, RedashConstants.PAGINATOR_MODE_OFFSET).trim(); }
+
+    public boolean isPaginatorStopOnShortPage() { return Boolean.valueOf(info.getProperty(RedashConstants.DRIVER_PROPERTY_PAGINATOR_STOP_ON_SHORT_PAGE, "false")); }
+
+    /**
+     * The statements are submitted to /api/query_results instead of the query of the connection.
+     */
+    public boolean isAdhocExecution() { return adhocExecution; }
+
+    /**
+     * The server refused an ad hoc execution, the next ones use the query of the connection.
+     */
+    public void disableAdhocExecution() { this.adhocExecution = false; }
+
+    /**
+     * Seconds old a result Redash has of the same query can be to be used instead of running it.
+     */
+    public int getMaxAge() { return getIntProperty(RedashConstants.DRIVER_PROPERTY_EXECUTION_MAX_AGE, 0); }
+
     public String getQueryName() { return info.getProperty(RedashConstants.DRIVER_PROPERTY_QUERY_NAME, RedashConstants.DRIVER_NAME); }
 
+    protected int getIntProperty(String key, int defaultValue) {
+        try {
+            return Integer.valueOf( info.getProperty(key, String.valueOf(defaultValue)).trim() );
+        } catch (Exception e) {
+            return defaultValue;
+        }
+    }
+
+    protected long getLongProperty(String key, long defaultValue) {
+        try {
+            return Long.valueOf( info.getProperty(key, String.valueOf(defaultValue)).trim() );
+        } catch (Exception e) {
+            return defaultValue;
+        }
+    }
+
     @Override
     public String toString() {
         if( ds != null )
@@ -82,6 +135,9 @@ public class RedashConnection extends GenericConnection {
         this.rh = new RedashHttp(isTraced(), url, getToken(), isSSL());
         if( info.containsKey(RedashConstants.DRIVER_PROPERTY_USER_AGENT) )
             this.rh.setUserAgent( info.getProperty( RedashConstants.DRIVER_PROPERTY_USER_AGENT ) );
+        this.rh.setPool( getIntProperty(RedashConstants.DRIVER_PROPERTY_HTTP_MAX_CONNECTIONS, RedashHttp.DEFAULT_MAX_CONNECTIONS) );
+        this.rh.setConnectTimeout( getIntProperty(RedashConstants.DRIVER_PROPERTY_HTTP_CONNECT_TIMEOUT, RedashHttp.DEFAULT_CONNECT_TIMEOUT) );
+        this.rh.setReadTimeout( getIntProperty(RedashConstants.DRIVER_PROPERTY_HTTP_READ_TIMEOUT, RedashHttp.DEFAULT_READ_TIMEOUT) );
 
         this.dsCommand = new RedashDataSourcesCommand(this);
         if( ds != null && !ds.isEmpty() ) {
@@ -93,11 +149,32 @@ public class RedashConnection extends GenericConnection {
         this.metadata = new RedashDatabaseMetaData(this);
         this.queryCommand = new RedashQueryCommand(this);
         this.queryCommand.identifyOrCreateQueryId();
+        this.queryPool = new RedashQueryPool(this, this.queryCommand, getIntProperty(RedashConstants.DRIVER_PROPERTY_QUERY_POOL_SIZE, 1));
+        final String cacheIdentity;
         try {
-            this.cacheControl = new RedashCacheControl(this, Integer.valueOf( info.getProperty(RedashConstants.DRIVER_PROPERTY_RESULTSET_CACHE_TTL, "120") ) );
-        } catch (Exception e) {
-            this.cacheControl = new RedashCacheControl(this, 120);
+            cacheIdentity = RedashCacheControl.identity(url, getToken());
+        } catch (NoSuchAlgorithmException e) {
+            throw new SQLException(e);
+        }
+        if( isSharedCache() ) {
+            // the first connection of the identity creates it, the others reuse it, released on close()
+            this.cacheControl = RedashDriver.acquireSharedCache(cacheIdentity);
+            if( this.cacheControl == null ) {
+                final RedashCacheControl created = createCacheControl(cacheIdentity);
+                this.cacheControl = RedashDriver.shareCache(cacheIdentity, created);
+                if( this.cacheControl != created ) created.close();
+            }
+            this.sharedCacheIdentity = cacheIdentity;
+        } else {
+            this.cacheControl = createCacheControl(cacheIdentity);
         }
+        if( RedashConstants.POLL_POLICY_FIXED.equalsIgnoreCase( info.getProperty(RedashConstants.DRIVER_PROPERTY_JOBS_POLL_POLICY, RedashConstants.POLL_POLICY_ADAPTIVE).trim() ) ) {
+            this.pollPolicy = RedashPollPolicy.FIXED;
+        } else {
+            this.pollPolicy = new RedashPollPolicy.Adaptive( getLongProperty(RedashConstants.DRIVER_PROPERTY_JOBS_POLL_INITIAL_DELAY, RedashPollPolicy.Adaptive.DEFAULT_INITIAL_DELAY),
+                    getLongProperty(RedashConstants.DRIVER_PROPERTY_JOBS_POLL_MAX_DELAY, RedashPollPolicy.Adaptive.DEFAULT_MAX_DELAY) );
+        }
+        this.adhocExecution = RedashConstants.EXECUTION_MODE_ADHOC.equalsIgnoreCase( info.getProperty(RedashConstants.DRIVER_PROPERTY_EXECUTION_MODE, RedashConstants.EXECUTION_MODE_QUERY).trim() );
         try {
             this.resultSetFetchSize = Integer.valueOf( info.getProperty(RedashConstants.DRIVER_PROPERTY_RESULTSET_FETCH_SIZE, "10000") );
         } catch (Exception e) {
@@ -105,6 +182,37 @@ public class RedashConnection extends GenericConnection {
         }
     }
 
+    private RedashCacheControl createCacheControl(String identity) throws SQLException {
+        final RedashCacheControl cacheControl = new RedashCacheControl(identity, getIntProperty(RedashConstants.DRIVER_PROPERTY_RESULTSET_CACHE_TTL, 120),
+                getIntProperty(RedashConstants.DRIVER_PROPERTY_RESULTSET_CACHE_MAX_ENTRIES, RedashCacheControl.DEFAULT_MAX_ENTRIES),
+                getLongProperty(RedashConstants.DRIVER_PROPERTY_RESULTSET_CACHE_PAYLOAD_MAX_BYTES, 0L) );
+        for(String key : info.stringPropertyNames()) {
+            if( key.startsWith(RedashConstants.DRIVER_PROPERTY_RESULTSET_CACHE_TTL_PREFIX) ) {
+                cacheControl.setTtl( key.substring(RedashConstants.DRIVER_PROPERTY_RESULTSET_CACHE_TTL_PREFIX.length()), getIntProperty(key, 120) );
+            }
+        }
+        cacheControl.setMinRuntime( getLongProperty(RedashConstants.DRIVER_PROPERTY_RESULTSET_CACHE_MIN_RUNTIME, 0L) );
+        cacheControl.setRuntimeTtl( getIntProperty(RedashConstants.DRIVER_PROPERTY_RESULTSET_CACHE_RUNTIME_TTL_FACTOR, 0),
+                getIntProperty(RedashConstants.DRIVER_PROPERTY_RESULTSET_CACHE_MAX_TTL, RedashCacheControl.DEFAULT_MAX_TTL) );
+        cacheControl.setStaleWhileRevalidate( getIntProperty(RedashConstants.DRIVER_PROPERTY_RESULTSET_CACHE_STALE_WHILE_REVALIDATE, 0) );
+        cacheControl.setRefreshAhead( getIntProperty(RedashConstants.DRIVER_PROPERTY_RESULTSET_CACHE_REFRESH_AHEAD, 0),
+                getIntProperty(RedashConstants.DRIVER_PROPERTY_RESULTSET_CACHE_REFRESH_AHEAD_MIN_HITS, RedashCacheControl.DEFAULT_REFRESH_MIN_HITS),
+                getIntProperty(RedashConstants.DRIVER_PROPERTY_RESULTSET_CACHE_REFRESH_AHEAD_MAX_CONCURRENT, RedashCacheControl.DEFAULT_REFRESH_MAX_CONCURRENT) );
+        cacheControl.setResultCache( getLongProperty(RedashConstants.DRIVER_PROPERTY_RESULTSET_CACHE_RESULTS_MAX_BYTES, 0L) );
+        cacheControl.setIgnoreCase( Boolean.valueOf( info.getProperty(RedashConstants.DRIVER_PROPERTY_RESULTSET_CACHE_KEY_IGNORE_CASE, "false") ) );
+        if( info.containsKey(RedashConstants.DRIVER_PROPERTY_RESULTSET_CACHE_DISK_DIR) ) {
+            try {
+                cacheControl.setDiskCache( new File( info.getProperty(RedashConstants.DRIVER_PROPERTY_RESULTSET_CACHE_DISK_DIR) ),
+                        getLongProperty(RedashConstants.DRIVER_PROPERTY_RESULTSET_CACHE_DISK_MAX_BYTES, 256L*1024*1024) );
+            } catch (IOException e) {
+                throw new SQLException(e);
+            }
+        }
+        return cacheControl;
+    }
+
+    public boolean isSharedCache() { return RedashConstants.CACHE_SCOPE_DRIVER.equalsIgnoreCase( info.getProperty(RedashConstants.DRIVER_PROPERTY_RESULTSET_CACHE_SCOPE, RedashConstants.CACHE_SCOPE_CONNECTION).trim() ); }
+
     @Override
     public Statement createStatement() throws SQLException {
         logMethod_("createStatement", true );
@@ -125,6 +233,7 @@ public class RedashConnection extends GenericConnection {
             if( this.queryCommand == null ) {
                 this.queryCommand = new RedashQueryCommand(this);
                 this.queryCommand.identifyOrCreateQueryId();
+                this.queryPool = new RedashQueryPool(this, this.queryCommand, getIntProperty(RedashConstants.DRIVER_PROPERTY_QUERY_POOL_SIZE, 1));
             }
         }
         return this.metadata;
@@ -155,6 +264,16 @@ public class RedashConnection extends GenericConnection {
         this.ds = null;
         this.dsCommand = null;
         this.queryCommand = null;
+        this.queryPool = null;
+        if( this.cacheControl != null ) {
+            if( this.sharedCacheIdentity != null ) {
+                RedashDriver.releaseSharedCache(this.sharedCacheIdentity);
+            } else {
+                this.cacheControl.close();
+            }
+            // released once: a second close() does not count down the other connections
+            this.cacheControl = null;
+        }
     }
 
     @Override
@@ -257,6 +376,10 @@ public class RedashConnection extends GenericConnection {
         this.warning = null;
     }
 
+    public RedashPollPolicy getPollPolicy() {
+        return pollPolicy;
+    }
+
     public RedashCacheControl getCacheControl() {
         return cacheControl;
     }
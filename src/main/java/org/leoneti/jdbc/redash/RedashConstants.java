@@ -19,6 +19,7 @@ public @interface RedashConstants {
     public static final String DRIVER_PREFIX = "jdbc:redash:";
     
     public static final String DRIVER_PROPERTY_QUERY_NAME = "queryName";
+    public static final String DRIVER_PROPERTY_QUERY_POOL_SIZE = "queryPool.size";
 
     public static final String DRIVER_PROPERTY_SSL = "ssl";
 
@@ -34,8 +35,85 @@ public @interface RedashConstants {
     
     public static final String DRIVER_PROPERTY_RESULTSET_CACHE_TTL = "resultSet.cache.ttl";
     
+    /**
+     * Prefix of the ttl of a data source: resultSet.cache.ttl.{data source}
+     */
+    public static final String DRIVER_PROPERTY_RESULTSET_CACHE_TTL_PREFIX = DRIVER_PROPERTY_RESULTSET_CACHE_TTL + ".";
+    
+    public static final String DRIVER_PROPERTY_RESULTSET_CACHE_MIN_RUNTIME = "resultSet.cache.minRuntime";
+    
+    public static final String DRIVER_PROPERTY_RESULTSET_CACHE_RUNTIME_TTL_FACTOR = "resultSet.cache.runtimeTtlFactor";
+    
+    public static final String DRIVER_PROPERTY_RESULTSET_CACHE_MAX_TTL = "resultSet.cache.maxTtl";
+    
+    public static final String DRIVER_PROPERTY_RESULTSET_CACHE_STALE_WHILE_REVALIDATE = "resultSet.cache.staleWhileRevalidate";
+    
+    public static final String DRIVER_PROPERTY_RESULTSET_CACHE_REFRESH_AHEAD = "resultSet.cache.refreshAhead";
+    
+    public static final String DRIVER_PROPERTY_RESULTSET_CACHE_REFRESH_AHEAD_MIN_HITS = "resultSet.cache.refreshAhead.minHits";
+    
+    public static final String DRIVER_PROPERTY_RESULTSET_CACHE_REFRESH_AHEAD_MAX_CONCURRENT = "resultSet.cache.refreshAhead.maxConcurrent";
+    
+    public static final String DRIVER_PROPERTY_RESULTSET_CACHE_MAX_ENTRIES = "resultSet.cache.maxEntries";
+    
+    public static final String DRIVER_PROPERTY_RESULTSET_CACHE_SCOPE = "resultSet.cache.scope";
+    
+    public static final String CACHE_SCOPE_CONNECTION = "connection";
+    
+    public static final String CACHE_SCOPE_DRIVER = "driver";
+    
+    public static final String DRIVER_PROPERTY_RESULTSET_CACHE_KEY_IGNORE_CASE = "resultSet.cache.key.ignoreCase";
+    
+    public static final String DRIVER_PROPERTY_RESULTSET_CACHE_PAYLOAD_MAX_BYTES = "resultSet.cache.payload.maxBytes";
+    
+    public static final String DRIVER_PROPERTY_RESULTSET_CACHE_RESULTS_MAX_BYTES = "resultSet.cache.results.maxBytes";
+    
+    public static final String DRIVER_PROPERTY_RESULTSET_CACHE_DISK_DIR = "resultSet.cache.disk.dir";
+    
+    public static final String DRIVER_PROPERTY_RESULTSET_CACHE_DISK_MAX_BYTES = "resultSet.cache.disk.maxBytes";
+    
+    public static final String DRIVER_PROPERTY_JOBS_POLL_POLICY = "jobs.poll.policy";
+    
+    public static final String POLL_POLICY_ADAPTIVE = "adaptive";
+    
+    public static final String POLL_POLICY_FIXED = "fixed";
+    
+    public static final String DRIVER_PROPERTY_JOBS_POLL_INITIAL_DELAY = "jobs.poll.initialDelay";
+    
+    public static final String DRIVER_PROPERTY_JOBS_POLL_MAX_DELAY = "jobs.poll.maxDelay";
+    
     public static final String DRIVER_PROPERTY_RESULTSET_FETCH_SIZE = "resultSet.fetch.size";
     
+    public static final String DRIVER_PROPERTY_RESULTSET_STREAMING = "resultSet.streaming";
+    
+    public static final String DRIVER_PROPERTY_RESULTSET_TYPE_SAMPLE_ROWS = "resultSet.typeSampleRows";
+    
+    public static final String DRIVER_PROPERTY_PAGINATOR_PREFETCH = "paginator.prefetch";
+    
+    public static final String DRIVER_PROPERTY_PAGINATOR_PARALLELISM = "paginator.parallelism";
+    
+    public static final String DRIVER_PROPERTY_PAGINATOR_MODE = "paginator.mode";
+    
+    public static final String DRIVER_PROPERTY_PAGINATOR_STOP_ON_SHORT_PAGE = "paginator.stopOnShortPage";
+    
+    public static final String PAGINATOR_MODE_OFFSET = "offset";
+    
+    public static final String PAGINATOR_MODE_KEYSET = "keyset";
+    
+    public static final String DRIVER_PROPERTY_EXECUTION_MODE = "execution.mode";
+    
+    public static final String EXECUTION_MODE_QUERY = "query";
+    
+    public static final String EXECUTION_MODE_ADHOC = "adhoc";
+    
+    public static final String DRIVER_PROPERTY_EXECUTION_MAX_AGE = "execution.maxAge";
+    
+    public static final String DRIVER_PROPERTY_HTTP_MAX_CONNECTIONS = "http.pool.maxConnections";
+    
+    public static final String DRIVER_PROPERTY_HTTP_CONNECT_TIMEOUT = "http.connectTimeout";
+    
+    public static final String DRIVER_PROPERTY_HTTP_READ_TIMEOUT = "http.readTimeout";
+    
     /*****************
      * HTTP Constants
      *****************/
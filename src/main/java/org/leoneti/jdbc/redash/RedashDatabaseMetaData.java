@@ -23,6 +23,7 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 import org.leoneti.jdbc.GenericDatabaseMetaData;
 import org.leoneti.jdbc.iterable.MapResultSet;
@@ -101,21 +102,11 @@ public class RedashDatabaseMetaData extends GenericDatabaseMetaData {
             if( jo.has("job") ) {
                 //System.out.println( jo.toString(2) );
                 String jobId = jo.getJSONObject("job").getString("id");
-                int c=0;
-                while(true) {
-                    Thread.sleep( (c<5?1000:(c<10?2000:(c<15?3000:4000))) );
-                    response = con.getRedashHttp().get( String.format("/api/jobs/%s", jobId) );
-                    jo = new JSONObject(response.toString());
-                    //System.out.println( jo.toString(2) );
-                    //if (jo.getJSONObject("job").getInt("status") == 3)
-                    if( jo.getJSONObject("job").get("status").toString().equalsIgnoreCase("finished") || jo.getJSONObject("job").get("status").toString().equalsIgnoreCase("SUCCESS") || jo.getJSONObject("job").get("status").toString().equals("3") )
-                        break;
-                    //if (jo.getJSONObject("job").getInt("status") == 4) {
-                    if( jo.getJSONObject("job").get("status").toString().equalsIgnoreCase("FAILURE") || jo.getJSONObject("job").get("status").toString().equals("4") ) {
-                        throw new RedashException(jo.getJSONObject("job"));
-                    }
-                    c++;
-                }
+                final RedashJobPoller.Finished finished = RedashThreads.get( RedashJobPoller.shared().submit(con.getRedashHttp().copy(), jobId, isTraced(), con.getPollPolicy(), -1) );
+                if( finished == null ) throw new RedashException( String.format("schema refresh job %s still running", jobId) );
+                jo = new JSONObject();
+                jo.put("job", finished.job);
+                response = new StringBuffer( jo.toString() );
                 //jo = new JSONObject(response.toString());
                 if( jo.getJSONObject("job").has("result") ) {
                     joSchema = jo.getJSONObject("job").getJSONArray("result");
@@ -157,7 +148,7 @@ public class RedashDatabaseMetaData extends GenericDatabaseMetaData {
             if( this.info.has(catalog) ) 
                 this.info.remove(catalog);
             this.info.put(catalog, dsInfo);
-        } catch(InterruptedException e) {
+        } catch(JSONException e) {
             throw new SQLException(e);
         }
     }
@@ -0,0 +1,177 @@
+/*****************************************************************************************
+* Copyright (C) 2023-2026  Ricardo Leoneti                           Date: 2026-10-17
+*
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v2.0
+* which accompanies this distribution, and is available at
+* https://www.eclipse.org/org/documents/epl-2.0/EPL-2.0.html
+*
+*****************************************************************************************/
+package org.leoneti.jdbc.redash;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Cache entries written to a directory, one file per key, so they survive a restart of the JVM.
+ * File: MAGIC, expiration time, executionTime, result_id, payload length and the payload (RedashPayloadCodec, may be empty).
+ * The files are read memory-mapped; above maxBytes the files least recently written are deleted, down to
+ * TRIM_RATIO of it. The bytes of the files are counted on writes and deletes, the directory is only listed to trim it.
+ */
+class RedashDiskCache {
+
+    private static final int MAGIC = 0x52444331; // RDC1
+    private static final int HEADER = 4 + 8 + 8 + 4 + 4;
+    private static final String SUFFIX = ".rdc";
+    private static final double TRIM_RATIO = 0.9;
+
+    static class Entry {
+        final long expiration;
+        final long executionTime;
+        final int resultId;
+        final byte[] payload;
+        Entry(long expiration, long executionTime, int resultId, byte[] payload) {
+            this.expiration = expiration;
+            this.executionTime = executionTime;
+            this.resultId = resultId;
+            this.payload = payload;
+        }
+    }
+
+    private final File dir;
+    private final long maxBytes;
+    private final AtomicLong bytes = new AtomicLong();
+
+    RedashDiskCache(File dir, long maxBytes) throws IOException {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(dir.toPath());
+        long total = 0;
+        for(File f : files()) total += f.length();
+        this.bytes.set(total);
+    }
+
+    private File[] files() {
+        final File[] files = dir.listFiles( new FilenameFilter() {
+            @Override
+            public boolean accept(File d, String name) {
+                return name.endsWith(SUFFIX);
+            }
+        });
+        return files == null ? new File[0] : files;
+    }
+
+    /**
+     * Bytes of the cache files, as counted.
+     */
+    long size() {
+        return this.bytes.get();
+    }
+
+    private void delete(Path path) throws IOException {
+        final long length = Files.isRegularFile(path) ? Files.size(path) : 0;
+        if( Files.deleteIfExists(path) ) this.bytes.addAndGet(-length);
+    }
+
+    private Path path(String fileKey) {
+        return new File(dir, fileKey + SUFFIX).toPath();
+    }
+
+    /**
+     * The entry of fileKey, null when there is none or it expired (the file is then deleted).
+     */
+    Entry read(String fileKey) {
+        final Path path = path(fileKey);
+        if( !Files.isRegularFile(path) ) return null;
+        try( FileChannel channel = FileChannel.open(path, StandardOpenOption.READ) ) {
+            if( channel.size() < HEADER ) throw new IOException("truncated " + path);
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if( buffer.getInt() != MAGIC ) throw new IOException("not a cache file " + path);
+            final long expiration = buffer.getLong();
+            final long executionTime = buffer.getLong();
+            final int resultId = buffer.getInt();
+            final int length = buffer.getInt();
+            if( System.currentTimeMillis() > expiration ) {
+                delete(path);
+                return null;
+            }
+            if( length > buffer.remaining() ) throw new IOException("truncated " + path);
+            byte[] payload = null;
+            if( length > 0 ) {
+                payload = new byte[length];
+                buffer.get(payload);
+            }
+            return new Entry(expiration, executionTime, resultId, payload);
+        } catch (IOException e) {
+            RedashDriver.log.log(Level.WARNING, e.getMessage(), e);
+            try {
+                delete(path);
+            } catch (IOException ee) {}
+            return null;
+        }
+    }
+
+    void write(String fileKey, long executionTime, long expiration, int resultId, byte[] payload) {
+        final int length = payload == null ? 0 : payload.length;
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER + length);
+        buffer.putInt(MAGIC).putLong(expiration).putLong(executionTime).putInt(resultId).putInt(length);
+        if( length > 0 ) buffer.put(payload);
+        buffer.flip();
+        Path tmp = null;
+        try {
+            // written aside and moved: a reader never sees a partial file
+            tmp = Files.createTempFile(dir.toPath(), fileKey, ".tmp");
+            try( FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE) ) {
+                while( buffer.hasRemaining() ) channel.write(buffer);
+            }
+            final Path path = path(fileKey);
+            final long replaced = Files.isRegularFile(path) ? Files.size(path) : 0;
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            tmp = null;
+            if( this.bytes.addAndGet(buffer.limit() - replaced) > maxBytes ) trim();
+        } catch (IOException e) {
+            RedashDriver.log.log(Level.WARNING, e.getMessage(), e);
+        } finally {
+            if( tmp != null ) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException e) {}
+            }
+        }
+    }
+
+    /**
+     * Deletes the files least recently written down to TRIM_RATIO of maxBytes, the count is taken again from the directory.
+     */
+    private synchronized void trim() {
+        if( this.bytes.get() <= maxBytes ) return;
+        final File[] files = files();
+        long total = 0;
+        for(File f : files) total += f.length();
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        final long target = (long) (maxBytes * TRIM_RATIO);
+        for(File f : files) {
+            if( total <= target ) break;
+            final long length = f.length();
+            if( f.delete() ) total -= length;
+        }
+        this.bytes.set(total);
+    }
+}
@@ -17,6 +17,8 @@ import java.sql.Driver;
 import java.sql.DriverPropertyInfo;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 import java.util.logging.Logger;
 
@@ -24,6 +26,55 @@ public class RedashDriver implements Driver {
 	
     public static final Logger log = Logger.getLogger(RedashDriver.class.getName());
 
+    /**
+     * Caches of resultSet.cache.scope=driver by RedashCacheControl.identity(), closed when the last connection releases it
+     */
+    private static final Map<String, SharedCache> SHARED_CACHES = new HashMap<String, SharedCache>();
+
+    private static class SharedCache {
+        final RedashCacheControl cacheControl;
+        int connections;
+        SharedCache(RedashCacheControl cacheControl) {
+            this.cacheControl = cacheControl;
+        }
+    }
+
+    /**
+     * The shared cache of the identity, counted for one more connection, or null when there is none yet.
+     */
+    static synchronized RedashCacheControl acquireSharedCache(String identity) {
+        final SharedCache shared = SHARED_CACHES.get(identity);
+        if( shared == null ) return null;
+        shared.connections++;
+        return shared.cacheControl;
+    }
+
+    /**
+     * Shares the cache created for the identity, counted for its connection. When another connection shared one first
+     * that one is returned (and counted) instead, the caller closes its own.
+     */
+    static synchronized RedashCacheControl shareCache(String identity, RedashCacheControl cacheControl) {
+        SharedCache shared = SHARED_CACHES.get(identity);
+        if( shared == null ) {
+            shared = new SharedCache(cacheControl);
+            SHARED_CACHES.put(identity, shared);
+        }
+        shared.connections++;
+        return shared.cacheControl;
+    }
+
+    /**
+     * A connection no longer uses the shared cache of the identity, the last one closes it.
+     */
+    static synchronized void releaseSharedCache(String identity) {
+        final SharedCache shared = SHARED_CACHES.get(identity);
+        if( shared == null ) return;
+        if( --shared.connections <= 0 ) {
+            SHARED_CACHES.remove(identity);
+            shared.cacheControl.close();
+        }
+    }
+
     @Override
     public Connection connect(String url, Properties info) throws SQLException {
         //info.list(System.out);
@@ -12,15 +12,26 @@
 *****************************************************************************************/
 package org.leoneti.jdbc.redash;
 
+import java.io.ByteArrayInputStream;
 import java.io.BufferedReader;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -30,12 +41,17 @@ import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
+import org.json.JSONException;
 import org.json.JSONObject;
 import org.leoneti.TraceLog;
 
 public class RedashHttp extends TraceLog {
     
     private static SSLSocketFactory SSL_FACTORY;
+    private static final Map<String, Semaphore> POOL = new ConcurrentHashMap<String, Semaphore>();
+    public static final int DEFAULT_MAX_CONNECTIONS = 10;
+    public static final int DEFAULT_CONNECT_TIMEOUT = 30;
+    public static final int DEFAULT_READ_TIMEOUT = 300;
     public static String DEFAULT_USERAGENT = String.format("JDBCDriver/%2$s (%1$s; x%3$s) RedashDriver/%4$s"
             , System.getProperty("os.name"), System.getProperty("java.version"), System.getProperty("sun.arch.data.model"), RedashHttp.class.getPackage().getImplementationVersion() );
 
@@ -44,6 +60,9 @@ public class RedashHttp extends TraceLog {
     private boolean ssl;
     
     private String userAgent = DEFAULT_USERAGENT;
+    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+    private int connectTimeout = DEFAULT_CONNECT_TIMEOUT * 1000;
+    private int readTimeout = DEFAULT_READ_TIMEOUT * 1000;
     
     public RedashHttp(boolean trace, String host, String token, boolean ssl) {
         super(trace, RedashHttp.class);
@@ -56,8 +75,50 @@ public class RedashHttp extends TraceLog {
         this.userAgent = userAgent;
     }
 
+    /**
+     * maxConnections bounds the concurrent requests to the host of the connections with the same maxConnections (they share
+     * the bound, a connection with another value has its own).
+     * The connections are kept alive and reused by the JDK keep-alive cache (TLS sessions through the shared SSL_FACTORY): it is
+     * JVM-wide and configured by the application only, with the http.keepAlive and http.maxConnections (idle connections kept
+     * per host, 5 by default) system properties, the driver doesn't change them.
+     */
+    public void setPool(int maxConnections) {
+        this.maxConnections = Math.max(1, maxConnections);
+    }
+
+    /**
+     * Seconds to connect to the host, 0 for no limit.
+     */
+    public void setConnectTimeout(int seconds) {
+        this.connectTimeout = Math.max(0, seconds) * 1000;
+    }
+
+    /**
+     * Seconds a response can take without sending anything, 0 for no limit.
+     */
+    public void setReadTimeout(int seconds) {
+        this.readTimeout = Math.max(0, seconds) * 1000;
+    }
+
+    public int getReadTimeout() {
+        return this.readTimeout / 1000;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
     public RedashHttp copy() {
-        return new RedashHttp(isTraced(), this.host, this.token, this.ssl);
+        final RedashHttp rh = new RedashHttp(isTraced(), this.host, this.token, this.ssl);
+        rh.userAgent = this.userAgent;
+        rh.maxConnections = this.maxConnections;
+        rh.connectTimeout = this.connectTimeout;
+        rh.readTimeout = this.readTimeout;
+        return rh;
+    }
+
+    private Semaphore getPool() {
+        return POOL.computeIfAbsent(String.format("http%s://%s#%d", (ssl?"s":""), this.host, this.maxConnections), k -> new Semaphore(this.maxConnections, true));
     }
 
     public StringBuffer get( String apipath, Object... args ) throws SQLException {
@@ -68,15 +129,72 @@ public class RedashHttp extends TraceLog {
         return request("POST", apipath, data, args );
     }
 
-    @SuppressWarnings("deprecation")
+    public StringBuffer delete( String apipath, Object... args ) throws SQLException {
+        return request("DELETE", apipath, null, args );
+    }
+
     public StringBuffer request(String method, String apipath, String data, Object... args) throws SQLException {
+        final StringBuffer response = new StringBuffer();
+        // the body must be read to the end and closed (not disconnected) to give the connection back to the keep-alive cache
+        try (BufferedReader in = new BufferedReader( new InputStreamReader( open(method, apipath, data, args), StandardCharsets.UTF_8 ) )) {
+            String inputLine;
+            while ((inputLine = in.readLine()) != null) {
+                response.append(inputLine);
+            }
+        } catch (IOException e) {
+            Logger.getLogger("redash.jdbc").log(Level.SEVERE, e.getMessage(), e);
+            throw new SQLException(e);
+        }
+        //if(isTraced()) Logger.getLogger("redash.jdbc").log(Level.INFO, response.toString());
+        //System.out.println( response.toString() );
+        return response;
+    }
+
+    /**
+     * GET returning the body as a stream, the connection goes back to the pool when it is read to the end or closed.
+     */
+    public InputStream stream( String apipath, Object... args ) throws SQLException {
+        return open("GET", apipath, null, args );
+    }
+
+    /**
+     * The message of the JSON error of Redash, otherwise the start of the body (the HTML page of a proxy).
+     */
+    private static String errorMessage(int responseCode, String body) {
+        try {
+            final JSONObject jo = new JSONObject(body);
+            if( jo.has("message") ) return String.valueOf(jo.get("message"));
+        } catch (JSONException e) {
+            // not JSON
+        }
+        return String.format("HTTP %d: %s", responseCode, body.length() > 200 ? body.substring(0, 200) + "..." : body);
+    }
+
+    @SuppressWarnings("deprecation")
+    private InputStream open(String method, String apipath, String data, Object... args) throws SQLException {
         if(isTraced()) logMethod("request", method, apipath, data, String.format( "[%s]",String.join(",",Arrays.stream(args).map(Object::toString).toArray(String[]::new)) ) );
+        final Semaphore pool = getPool();
+        // the connections of the pool can all be held by streams never read nor closed: don't wait for them forever
+        try {
+            if( this.connectTimeout > 0 ) {
+                if( !pool.tryAcquire(this.connectTimeout, TimeUnit.MILLISECONDS) )
+                    throw new SQLTimeoutException( String.format("No HTTP connection to %s free in %d ms (%d in use)", this.host, this.connectTimeout, this.maxConnections) );
+            } else {
+                pool.acquire();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(e);
+        }
+        boolean releaseOnExit = true;
     	HttpURLConnection con = null;
         try {
         	apipath = String.format(apipath, args);
             URL requrl = new URL(String.format("http%s://%s%s",(ssl?"s":""), this.host, apipath));
             if(isTraced()) Logger.getLogger("redash.jdbc").log(Level.INFO, String.format("Request %5s %s '%s'", method, requrl.toString(), data) );
             con = (HttpURLConnection) requrl.openConnection();
+            con.setConnectTimeout(this.connectTimeout);
+            con.setReadTimeout(this.readTimeout);
             if (con instanceof HttpsURLConnection) {
                 ((HttpsURLConnection) con).setSSLSocketFactory(SSL_FACTORY);
             }
@@ -88,38 +206,74 @@ public class RedashHttp extends TraceLog {
                 con.setRequestProperty("Content-Type", "application/json");
                 con.setDoOutput(true);
                 byte[] input = data.getBytes("utf-8");
-                con.getOutputStream().write(input, 0, input.length);
+                try (OutputStream out = con.getOutputStream()) {
+                    out.write(input, 0, input.length);
+                }
             }
             int responseCode = con.getResponseCode();
             if(isTraced()) Logger.getLogger("redash.jdbc").log(Level.INFO, "{0} Response Code : {1} \t ContentLength : {2}" , new Object[] {method, responseCode, con.getContentLength()} );
+            if( responseCode == HttpURLConnection.HTTP_OK ) {
+                releaseOnExit = false;
+                return new FilterInputStream(con.getInputStream()) {
+                    private final AtomicBoolean released = new AtomicBoolean();
+                    private void release() {
+                        if( released.compareAndSet(false, true) ) pool.release();
+                    }
+                    @Override
+                    public int read() throws IOException {
+                        final int b = super.read();
+                        // at the end the JDK gives the connection back to the keep-alive cache
+                        if( b < 0 ) release();
+                        return b;
+                    }
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        final int n = super.read(b, off, len);
+                        if( n < 0 ) release();
+                        return n;
+                    }
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            release();
+                        }
+                    }
+                };
+            }
+            if( responseCode == HttpURLConnection.HTTP_NO_CONTENT ) {
+                return new ByteArrayInputStream(new byte[0]);
+            }
             StringBuffer response = new StringBuffer();
-            BufferedReader in = new BufferedReader( new InputStreamReader(responseCode < HttpURLConnection.HTTP_BAD_REQUEST ? con.getInputStream() : con.getErrorStream() ) );
-            String inputLine;
-            while ((inputLine = in.readLine()) != null) {
-                response.append(inputLine);
+            final InputStream is = responseCode < HttpURLConnection.HTTP_BAD_REQUEST ? con.getInputStream() : con.getErrorStream();
+            if( is != null ) {
+                try (BufferedReader in = new BufferedReader( new InputStreamReader(is, StandardCharsets.UTF_8) )) {
+                    String inputLine;
+                    while ((inputLine = in.readLine()) != null) {
+                        response.append(inputLine);
+                    }
+                }
             }
-            in.close();
-            //if(isTraced()) Logger.getLogger("redash.jdbc").log(Level.INFO, response.toString());
-            //System.out.println( response.toString() );
-            if( responseCode == HttpURLConnection.HTTP_OK )
-                return response;
             if( responseCode == HttpURLConnection.HTTP_MOVED_PERM )
                 throw new RedashException( "ERROR: " + response );
             if( response.length() > 0 ) {
                 Logger.getLogger("redash.jdbc").log(Level.SEVERE, "ERROR: REPONSE: " + response );
-                final JSONObject jo = new JSONObject(response.toString());
-                throw new SQLException(String.valueOf(jo.get("message")), "HTTP " + responseCode, responseCode);
+                throw new SQLException(errorMessage(responseCode, response.toString()), "HTTP " + responseCode, responseCode);
             } else
             	throw new SQLException( String.format( "%s request did not work(%d).\nToken:%s\nURL:%s\ndata:%s\nContentLength:%d",method,responseCode,token,requrl.toString(),data,con.getContentLength()) );
         } catch (IOException e) {
             Logger.getLogger("redash.jdbc").log(Level.SEVERE, e.getMessage(), e);
-            throw new SQLException(e);
-        } finally {
+            // a broken connection must not go back to the keep-alive cache
             if (con != null) {
                 try {
                     con.disconnect();
-                } catch (Exception e) {}
+                } catch (Exception ee) {}
             }
+            throw new SQLException(e);
+        } finally {
+            if( releaseOnExit )
+                pool.release();
         }
     }
 
@@ -0,0 +1,254 @@
+/*****************************************************************************************
+* Copyright (C) 2023-2026  Ricardo Leoneti                           Date: 2026-10-17
+*
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v2.0
+* which accompanies this distribution, and is available at
+* https://www.eclipse.org/org/documents/epl-2.0/EPL-2.0.html
+*
+*****************************************************************************************/
+package org.leoneti.jdbc.redash;
+
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.json.JSONObject;
+
+/**
+ * Polls /api/jobs/{id} of all the jobs submitted by the driver, instead of a sleeping thread per statement: one timer thread
+ * schedules the polls and POLL_THREADS workers make the requests (with a read timeout of at most POLL_TIMEOUT seconds, a
+ * poll timed out is retried).
+ * Every job has its own next poll time (see RedashPollPolicy) and at most MAX_POLLS_PER_SECOND requests are made, the jobs
+ * waiting the longest first: with many jobs at once they are polled less often, not all at once.
+ * The future of a job completes with Finished when it finished, exceptionally with a RedashException when it failed, or
+ * with null when it still runs after its maxPolls. Canceling the future forgets the job.
+ */
+public final class RedashJobPoller {
+
+    public static final int MAX_POLLS = 100;
+
+    public static final int MAX_POLLS_PER_SECOND = 20;
+
+    public static final int POLL_THREADS = 4;
+
+    public static final int POLL_TIMEOUT = 30;
+
+    private static RedashJobPoller shared;
+
+    public static final class Finished {
+        /**
+         * The job of the last poll
+         */
+        public final JSONObject job;
+        /**
+         * Millis the job took: between the last poll that saw it running and the one that saw it finished (unlike the time
+         * the caller waited, it doesn't grow with the poll delays).
+         */
+        public final long runtime;
+        Finished(JSONObject job, long runtime) {
+            this.job = job;
+            this.runtime = runtime;
+        }
+    }
+
+    private static class Job {
+        final RedashHttp rh;
+        final String id;
+        final boolean traced;
+        final RedashPollPolicy policy;
+        final long expected;
+        final int maxPolls;
+        final long submitted = System.currentTimeMillis();
+        final CompletableFuture<Finished> future = new CompletableFuture<Finished>();
+        int polls = 0;
+        long running = 0;
+        volatile long due;
+        /**
+         * A worker is polling it, it is scheduled again when the poll is done
+         */
+        volatile boolean polling;
+        Job(RedashHttp rh, String id, boolean traced, RedashPollPolicy policy, long expected, int maxPolls) {
+            this.rh = rh;
+            this.id = id;
+            this.traced = traced;
+            this.policy = policy;
+            this.expected = expected;
+            this.maxPolls = maxPolls;
+        }
+        /**
+         * Counts a poll that didn't see the job finished, false when it was the last one.
+         */
+        boolean polled() {
+            return ++this.polls <= this.maxPolls || this.maxPolls <= 0;
+        }
+        void schedule() {
+            final long now = System.currentTimeMillis();
+            this.due = now + this.policy.delay(this.polls, now - this.submitted, this.expected);
+        }
+    }
+
+    private final Set<Job> jobs = Collections.newSetFromMap(new ConcurrentHashMap<Job,Boolean>());
+    private final ScheduledExecutorService executor;
+    private final ExecutorService workers;
+    private ScheduledFuture<?> tick;
+    private long nextTick;
+    private double tokens = MAX_POLLS_PER_SECOND;
+    private long lastTick = System.currentTimeMillis();
+
+    private RedashJobPoller() {
+        final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, RedashThreads.daemon("redash-poller"));
+        executor.setRemoveOnCancelPolicy(true);
+        this.executor = executor;
+        final ThreadPoolExecutor workers = new ThreadPoolExecutor(POLL_THREADS, POLL_THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), RedashThreads.daemon("redash-poll"));
+        workers.allowCoreThreadTimeOut(true);
+        this.workers = workers;
+    }
+
+    public static synchronized RedashJobPoller shared() {
+        if( shared == null ) shared = new RedashJobPoller();
+        return shared;
+    }
+
+    /**
+     * Starts polling the job jobId with rh (not used by another thread meanwhile), up to MAX_POLLS times.
+     * @param expected millis the same query took before, -1 when unknown
+     */
+    public CompletableFuture<Finished> submit(RedashHttp rh, String jobId, boolean traced, RedashPollPolicy policy, long expected) {
+        return submit(rh, jobId, traced, policy, expected, MAX_POLLS);
+    }
+
+    /**
+     * @param maxPolls polls before the future completes with null, 0 to poll until the future is canceled
+     */
+    public CompletableFuture<Finished> submit(RedashHttp rh, String jobId, boolean traced, RedashPollPolicy policy, long expected, int maxPolls) {
+        if( rh.getReadTimeout() <= 0 || rh.getReadTimeout() > POLL_TIMEOUT ) rh.setReadTimeout(POLL_TIMEOUT);
+        final Job job = new Job(rh, jobId, traced, policy, expected, maxPolls);
+        job.schedule();
+        this.jobs.add(job);
+        wake(job.due);
+        return job.future;
+    }
+
+    /**
+     * A job is due at time: the next tick runs then at the latest.
+     */
+    private synchronized void wake(long time) {
+        if( this.tick == null || time < this.nextTick ) schedule(time);
+    }
+
+    /**
+     * The next tick runs at time (only the one thread runs them, the previous is canceled).
+     */
+    private void schedule(long time) {
+        if( this.tick != null ) this.tick.cancel(false);
+        this.nextTick = time;
+        this.tick = this.executor.schedule( new Runnable() {
+            @Override
+            public void run() {
+                tick();
+            }
+        }, Math.max(0, time - System.currentTimeMillis()), TimeUnit.MILLISECONDS );
+    }
+
+    private void tick() {
+        try {
+            final long now = System.currentTimeMillis();
+            this.tokens = Math.min(MAX_POLLS_PER_SECOND, this.tokens + (now - this.lastTick) * MAX_POLLS_PER_SECOND / 1000.0);
+            this.lastTick = now;
+            final List<Job> due = new ArrayList<Job>();
+            for(Job job : this.jobs) {
+                if( job.future.isDone() ) {
+                    this.jobs.remove(job);
+                } else if( !job.polling && job.due <= now ) {
+                    due.add(job);
+                }
+            }
+            Collections.sort(due, new Comparator<Job>() {
+                @Override
+                public int compare(Job a, Job b) {
+                    return Long.compare(a.due, b.due);
+                }
+            });
+            for(final Job job : due) {
+                if( this.tokens < 1 ) break;
+                this.tokens--;
+                job.polling = true;
+                this.workers.execute( new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            poll(job);
+                        } finally {
+                            job.polling = false;
+                            if( job.future.isDone() ) {
+                                jobs.remove(job);
+                            } else {
+                                wake(job.due);
+                            }
+                        }
+                    }
+                });
+            }
+        } catch (Throwable e) {
+            RedashDriver.log.log(Level.SEVERE, e.getMessage(), e);
+        }
+        synchronized( this ) {
+            long next = Long.MAX_VALUE;
+            // the jobs being polled wake() the timer when they are done
+            for(Job job : this.jobs) if( !job.polling ) next = Math.min(next, job.due);
+            if( next == Long.MAX_VALUE ) {
+                if( this.tick != null ) this.tick.cancel(false);
+                this.tick = null;
+            } else {
+                // the due jobs left waiting for the rate
+                if( this.tokens < 1 ) next = Math.max(next, System.currentTimeMillis() + 1000 / MAX_POLLS_PER_SECOND);
+                schedule(next);
+            }
+        }
+    }
+
+    private void poll(Job job) {
+        try {
+            final StringBuffer response = job.rh.get("/api/jobs/%s", job.id);
+            if( job.traced ) Logger.getLogger("redash.jdbc").log(Level.INFO, "RESPONSE: " + response);
+            final JSONObject jo = new JSONObject(response.toString());
+            if( !jo.has("job") ) throw new RedashException(jo);
+            final JSONObject redashJob = jo.getJSONObject("job");
+            final String status = redashJob.get("status").toString();
+            final long elapsed = System.currentTimeMillis() - job.submitted;
+            if( status.equalsIgnoreCase("finished") || status.equalsIgnoreCase("SUCCESS") || status.equals("3") ) {
+                job.future.complete( new Finished(redashJob, (job.running + elapsed) / 2) );
+            } else if( status.equalsIgnoreCase("FAILURE") || status.equalsIgnoreCase("failed") || status.equals("4") ) {
+                throw new RedashException(redashJob);
+            } else if( !job.polled() ) {
+                job.future.complete(null);
+            } else {
+                job.running = elapsed;
+                job.schedule();
+            }
+        } catch (Exception e) {
+            if( e.getCause() instanceof SocketTimeoutException && job.polled() ) {
+                RedashDriver.log.log(Level.WARNING, String.format("Poll of job %s timed out, retrying", job.id));
+                job.schedule();
+                return;
+            }
+            job.future.completeExceptionally(e);
+        }
+    }
+}
@@ -19,10 +19,18 @@ import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Time;
 import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
-import org.json.JSONArray;
 import org.json.JSONObject;
 import org.leoneti.jdbc.GenericResultSet;
 import org.leoneti.jdbc.redash.commands.RedashExecuteQueryCommand;
@@ -30,6 +38,8 @@ import org.leoneti.jdbc.redash.commands.RedashExecuteQueryCommand;
 
 public class RedashPaginatorResultSet extends GenericResultSet {
     
+    private static final Pattern TIMESTAMP_TEXT = Pattern.compile("(\\d{4}-\\d{2}-\\d{2})(?:[Tt ](\\d{2}:\\d{2}:\\d{2})(?:[.,](\\d+))?)?\\s*(?:[Zz]|[+-]\\d{2}(?::?\\d{2})?)?");
+
     private RedashConnection con;
     
     private RedashExecuteQueryCommand execQueryCommand;
@@ -37,13 +47,42 @@ public class RedashPaginatorResultSet extends GenericResultSet {
     private String sql;
     private List<Object> result_id_list = new ArrayList<Object>(10);
     private int page=0;
+    private int pageSize;
     private RedashResultSet currentResultSet;
     private String dsType;
-    private JSONArray rows;
-    private Comparable<Object> lastColumnValue = null;
+    private boolean keyset;
+    private boolean stopOnShortPage;
+    private String nextKeysetQuery;
+
+    private int prefetch;
+    private int parallelism;
+    private int lastSubmittedPage = 0;
+    private ExecutorService executor;
+    private final Deque<Prefetch> prefetched = new ArrayDeque<Prefetch>();
 
     private int rowNumber = 0;
 
+    private static class Page {
+        private final int resultId;
+        private final RedashResultSet rs;
+        Page(int resultId, RedashResultSet rs) {
+            this.resultId = resultId;
+            this.rs = rs;
+        }
+    }
+
+    /**
+     * A page submitted to the executor with its own command: the commands keep the state of one execution.
+     */
+    private static class Prefetch {
+        private final RedashExecuteQueryCommand command;
+        private final Future<Page> future;
+        Prefetch(RedashExecuteQueryCommand command, Future<Page> future) {
+            this.command = command;
+            this.future = future;
+        }
+    }
+
     public RedashPaginatorResultSet(RedashConnection con, RedashExecuteQueryCommand execQueryCommand, String column, String sql, String dsType ) throws SQLException {
         super(con.isTraced(), RedashPaginatorResultSet.class);
         this.con = con;
@@ -51,20 +90,96 @@ public class RedashPaginatorResultSet extends GenericResultSet {
         this.column = column == null ? null : column.trim();
         this.sql = sql.trim();
         this.dsType = dsType;
-        this.executeNextFetch();
+        this.pageSize = con.getResultSetFetchSize();
+        this.keyset = this.column != null && RedashConstants.PAGINATOR_MODE_KEYSET.equalsIgnoreCase( con.getPaginatorMode() );
+        this.stopOnShortPage = con.isPaginatorStopOnShortPage();
+        this.parallelism = Math.max(1, con.getPaginatorParallelism());
+        // pages in flight: at least one per parallel job
+        this.prefetch = Math.max(con.getPaginatorPrefetch(), this.parallelism > 1 ? this.parallelism : 0);
+        if( this.prefetch > 0 ) {
+            this.executor = Executors.newFixedThreadPool( this.parallelism, RedashThreads.daemon("redash-paginator") );
+        }
+        this.setCurrentPage( fetchPage( execQueryCommand, this.keyset ? getKeysetQuery(null) : getPaginatorQuery(this.page) ) );
     }
     
+    /**
+     * Runs the query of one page, on the caller thread or on the prefetch executor.
+     */
+    private Page fetchPage(RedashExecuteQueryCommand command, String query) throws SQLException {
+        final JSONObject currentJo = command.executeQuery( query );
+        final int result_id = currentJo.getJSONObject("query_result").optInt("id", -1);
+        return new Page(result_id, new RedashResultSet(con.isResultSetTraced(), currentJo, this.dsType, con.getTypeSampleRows()));
+    }
+
+    private void setCurrentPage(Page current) throws SQLException {
+        this.result_id_list.add( current.resultId );
+        this.currentResultSet = current.rs;
+        if( isLastPage() ) {
+            cancelPrefetch();
+        } else {
+            if( this.keyset ) {
+                // the next page starts after the key of the last row of this one
+                this.nextKeysetQuery = getKeysetQuery( toSqlLiteral( this.currentResultSet.getLastRowObject( findColumn(this.column) ) ) );
+            }
+            submitPrefetch();
+        }
+    }
+
+    /**
+     * Keeps the next prefetch pages submitted while the rows of the current one are read, parallelism of them run at once.
+     * The futures are queued in page order, so the rows are returned in the same order as the sequential paginator.
+     */
+    private void submitPrefetch() {
+        if( this.executor == null ) return;
+        if( this.lastSubmittedPage < this.page ) this.lastSubmittedPage = this.page;
+        // keyset pages are chained: only the next one is known
+        while( this.prefetched.size() < (this.keyset ? 1 : this.prefetch) ) {
+            final String query = this.keyset ? this.nextKeysetQuery : getPaginatorQuery( ++this.lastSubmittedPage );
+            final RedashExecuteQueryCommand command = this.execQueryCommand.clone();
+            this.prefetched.add( new Prefetch(command, this.executor.submit( new Callable<Page>() {
+                @Override
+                public Page call() throws Exception {
+                    return fetchPage(command, query);
+                }
+            }) ) );
+        }
+    }
+
+    /**
+     * Cancels the pages through their commands, so the jobs already submitted are canceled on Redash too.
+     */
+    private void cancelPrefetch() {
+        Prefetch prefetch;
+        while( (prefetch = this.prefetched.poll()) != null ) {
+            prefetch.command.cancel();
+            prefetch.future.cancel(false);
+        }
+    }
+
+    /**
+     * The last page is the empty one: Redash may return fewer rows than resultSet.fetch.size before the end (apply_auto_limit,
+     * a row limit of the server). With paginator.stopOnShortPage the first shorter page is the last one, saving that query.
+     */
+    private boolean isLastPage() {
+        final int rows = this.currentResultSet.getRowCount();
+        return rows == 0 || (this.stopOnShortPage && rows < this.pageSize);
+    }
+
     private void executeNextFetch() throws SQLException {
-        logMethodWithReturn( "executeNextFetch", "page:"+page );
-        final String sql = getPaginatorQuery();
-        JSONObject currentJo = execQueryCommand.executeQuery( sql );
-        this.rows = currentJo.getJSONObject("query_result").getJSONObject("data").getJSONArray("rows");
-        this.result_id_list.add( execQueryCommand.getLastResultId() );
-        this.currentResultSet = new RedashResultSet(con.isResultSetTraced(), currentJo, this.dsType);
+        final Prefetch prefetch = this.prefetched.poll();
+        try {
+            this.setCurrentPage( prefetch == null ? fetchPage( execQueryCommand, this.keyset ? this.nextKeysetQuery : getPaginatorQuery(this.page) ) : RedashThreads.get(prefetch.future) );
+        } catch (SQLException | RuntimeException e) {
+            // the pages after a failed one (or an interrupted wait) are never read: their jobs are canceled now, not on close()
+            if( prefetch != null ) this.prefetched.addFirst(prefetch);
+            cancelPrefetch();
+            throw e;
+        }
     }
     
-    private String getPaginatorQuery() {
-        final int pagesize = con.getResultSetFetchSize();
+    private String getPaginatorQuery(int page) {
+        logMethodWithReturn( "getPaginatorQuery", "page:"+page );
+        final int pagesize = this.pageSize;
         final String query;
         final String fetchLimit;
         if( this.dsType.equalsIgnoreCase("oracle") ) {
@@ -81,22 +196,91 @@ public class RedashPaginatorResultSet extends GenericResultSet {
         return query;
     }
     
-    @SuppressWarnings("unchecked")
+    /**
+     * Keyset (seek) page: WHERE column &gt; key of the previous page instead of OFFSET, every page costs the same to the database.
+     * The column must be unique, rows with NULL on it are not returned.
+     */
+    private String getKeysetQuery(String lastKey) {
+        final String query = keysetQuery(this.dsType, this.sql, this.column, this.pageSize, lastKey);
+        logMethodWithReturn("getKeysetQuery", query);
+        return query;
+    }
+
+    /**
+     * @param lastKey SQL literal of the key of the last row of the previous page, null for the first page
+     */
+    static String keysetQuery(String dsType, String sql, String column, int pageSize, String lastKey) {
+        final String fetchLimit;
+        if( dsType.equalsIgnoreCase("oracle") ) {
+            fetchLimit = String.format("FETCH NEXT %d ROWS ONLY", pageSize );
+        } else {
+            fetchLimit = String.format("LIMIT %d", pageSize );
+        }
+        final String where = lastKey == null ? column + " IS NOT NULL" : column + " > " + lastKey;
+        return "SELECT * FROM ( " + sql + " ) tmp_paginator WHERE " + where + " ORDER BY " + column + " ASC " + fetchLimit;
+    }
+
+    /**
+     * SQL literal of a key value for the data source dialect.
+     */
+    private String toSqlLiteral(Object value) throws SQLException {
+        if( value == null ) throw new SQLException( String.format("PAGINATOR keyset column %s is NULL", this.column) );
+        final boolean oracle = this.dsType.equalsIgnoreCase("oracle");
+        switch( this.currentResultSet.getInternalMetaData().getColumnType( findColumn(this.column) ) ) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                // without exponent: 1.0E20 isn't a literal of every database
+                if( value instanceof BigDecimal ) return ((BigDecimal) value).toPlainString();
+                try {
+                    return new BigDecimal( value.toString() ).toPlainString();
+                } catch (NumberFormatException e) {
+                    throw new SQLException( String.format("PAGINATOR keyset column %s is not a number: %s", this.column, value) );
+                }
+            case Types.BOOLEAN:
+                return oracle ? (Boolean.TRUE.equals(value) ? "1" : "0") : value.toString().toUpperCase();
+            case Types.DATE:
+                return "DATE '" + value.toString().trim().substring(0, 10) + "'";
+            case Types.TIMESTAMP:
+            case Types.TIMESTAMP_WITH_TIMEZONE:
+                return "TIMESTAMP '" + toTimestampText( this.column, value.toString() ) + "'";
+            default:
+                String str = value.toString().replace("'", "''");
+                if( this.dsType.equalsIgnoreCase("mysql") ) str = str.replace("\\", "\\\\");
+                return "'" + str + "'";
+        }
+    }
+
+    /**
+     * yyyy-MM-dd HH:mm:ss[.f] of an ISO-8601 timestamp sent by Redash, without its offset: the database sent the value
+     * on the time zone of its session, the same one the next page runs on.
+     */
+    static String toTimestampText(String column, String value) throws SQLException {
+        final Matcher m = TIMESTAMP_TEXT.matcher( value.trim() );
+        if( !m.matches() ) throw new SQLException( String.format("PAGINATOR keyset column %s is not a timestamp: %s", column, value) );
+        final String fraction = m.group(3) == null ? "" : "." + (m.group(3).length() > 9 ? m.group(3).substring(0, 9) : m.group(3));
+        return m.group(1) + " " + (m.group(2) == null ? "00:00:00" : m.group(2)) + fraction;
+    }
+
     @Override
     public boolean next() throws SQLException {
+        if( this.currentResultSet == null ) {
+            if( con.isResultSetTraced() ) logMethodWithReturn("next", false);
+            return false;
+        }
         final boolean next = currentResultSet.next();
         if( next ) {
-            if( this.column != null ) {
-                final Object lastRef = currentResultSet.getObject( this.column );
-                if( this.lastColumnValue == null || this.lastColumnValue.compareTo(lastRef) < 0 ) {
-                    this.lastColumnValue = (Comparable<Object>) lastRef;
-                }
-            }
             if( con.isResultSetTraced() ) logMethodWithReturn("next", true);
             this.rowNumber++;
             return true;
         }
-        if( this.rows.isEmpty() ) {
+        if( isLastPage() ) {
             if( con.isResultSetTraced() ) logMethodWithReturn("next", false);
             return false;
         }
@@ -237,6 +421,11 @@ public class RedashPaginatorResultSet extends GenericResultSet {
     
     @Override
     public void close() throws SQLException {
+        cancelPrefetch();
+        if( this.executor != null ) {
+            this.executor.shutdown();
+            this.executor = null;
+        }
         this.execQueryCommand = null;
     }
 
@@ -0,0 +1,97 @@
+/*****************************************************************************************
+* Copyright (C) 2023-2026  Ricardo Leoneti                           Date: 2026-10-17
+*
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v2.0
+* which accompanies this distribution, and is available at
+* https://www.eclipse.org/org/documents/epl-2.0/EPL-2.0.html
+*
+*****************************************************************************************/
+package org.leoneti.jdbc.redash;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * Compact form of a /api/query_results/{id} payload: the rows are stored by column (the column names are not
+ * repeated on every row) and the JSON text is deflated.
+ */
+public final class RedashPayloadCodec {
+
+    private RedashPayloadCodec() {
+    }
+
+    public static byte[] encode(JSONObject jo) throws IOException {
+        final JSONObject queryResult = jo.getJSONObject("query_result");
+        final JSONObject data = queryResult.getJSONObject("data");
+        final JSONArray columns = data.getJSONArray("columns");
+        final JSONArray rows = data.getJSONArray("rows");
+        final JSONArray values = new JSONArray();
+        for(int i=0; i < columns.length(); i++) {
+            final String name = columns.getJSONObject(i).getString("name");
+            final JSONArray column = new JSONArray();
+            for(int r=0; r < rows.length(); r++) {
+                final Object value = rows.getJSONObject(r).opt(name);
+                column.put( value == null ? JSONObject.NULL : value );
+            }
+            values.put(column);
+        }
+        final JSONObject encodedData = new JSONObject();
+        encodedData.put("columns", columns);
+        encodedData.put("rowCount", rows.length());
+        encodedData.put("values", values);
+        final JSONObject encoded = new JSONObject();
+        for(String key : queryResult.keySet()) {
+            if( !key.equals("data") ) encoded.put(key, queryResult.get(key));
+        }
+        encoded.put("data", encodedData);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64*1024);
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try( Writer writer = new OutputStreamWriter( new DeflaterOutputStream(bytes, deflater, 8192), StandardCharsets.UTF_8) ) {
+            encoded.write(writer);
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    public static JSONObject decode(byte[] payload) throws IOException {
+        final JSONObject encoded;
+        try( Reader reader = new InputStreamReader( new InflaterInputStream( new ByteArrayInputStream(payload) ), StandardCharsets.UTF_8) ) {
+            encoded = new JSONObject( new JSONTokener(reader) );
+        }
+        final JSONObject encodedData = encoded.getJSONObject("data");
+        final JSONArray columns = encodedData.getJSONArray("columns");
+        final JSONArray values = encodedData.getJSONArray("values");
+        final int rowCount = encodedData.getInt("rowCount");
+        final JSONArray rows = new JSONArray();
+        for(int r=0; r < rowCount; r++) {
+            final JSONObject row = new JSONObject();
+            for(int i=0; i < columns.length(); i++) {
+                row.put( columns.getJSONObject(i).getString("name"), values.getJSONArray(i).get(r) );
+            }
+            rows.put(row);
+        }
+        final JSONObject data = new JSONObject();
+        data.put("columns", columns);
+        data.put("rows", rows);
+        encoded.put("data", data);
+        final JSONObject jo = new JSONObject();
+        jo.put("query_result", encoded);
+        return jo;
+    }
+}
@@ -0,0 +1,68 @@
+/*****************************************************************************************
+* Copyright (C) 2023-2026  Ricardo Leoneti                           Date: 2026-10-17
+*
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v2.0
+* which accompanies this distribution, and is available at
+* https://www.eclipse.org/org/documents/epl-2.0/EPL-2.0.html
+*
+*****************************************************************************************/
+package org.leoneti.jdbc.redash;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * When RedashJobPoller polls a job again.
+ */
+public interface RedashPollPolicy {
+
+    /**
+     * The 1s/2s/3s/4s schedule of the first versions of the driver.
+     */
+    RedashPollPolicy FIXED = new RedashPollPolicy() {
+        @Override
+        public long delay(int polls, long elapsed, long expected) {
+            return (polls < 5 ? 1000 : (polls < 10 ? 2000 : (polls < 15 ? 3000 : 4000)));
+        }
+    };
+
+    /**
+     * Millis to wait before the poll number polls (from 0) of a job.
+     * @param elapsed millis since the job was submitted
+     * @param expected millis jobs of the same query took before, -1 when unknown
+     */
+    long delay(int polls, long elapsed, long expected);
+
+    /**
+     * Exponential backoff from initialDelay to maxDelay with +-20% of jitter (the jobs submitted together don't stay in
+     * step). When the query took expected millis before, the first poll waits until then.
+     */
+    class Adaptive implements RedashPollPolicy {
+
+        public static final long DEFAULT_INITIAL_DELAY = 50;
+
+        public static final long DEFAULT_MAX_DELAY = 30000;
+
+        private static final double JITTER = 0.2;
+
+        private final long initialDelay;
+        private final long maxDelay;
+
+        public Adaptive(long initialDelay, long maxDelay) {
+            this.initialDelay = Math.max(1, initialDelay);
+            this.maxDelay = Math.max(this.initialDelay, maxDelay);
+        }
+
+        @Override
+        public long delay(int polls, long elapsed, long expected) {
+            long delay;
+            if( expected > elapsed ) {
+                delay = expected - elapsed;
+            } else {
+                delay = this.initialDelay << Math.min(polls, 30);
+            }
+            delay = Math.max(this.initialDelay, Math.min(this.maxDelay, delay));
+            return Math.round( delay * (1 + JITTER * (2 * ThreadLocalRandom.current().nextDouble() - 1)) );
+        }
+    }
+}
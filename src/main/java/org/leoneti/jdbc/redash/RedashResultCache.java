@@ -0,0 +1,65 @@
+/*****************************************************************************************
+* Copyright (C) 2023-2026  Ricardo Leoneti                           Date: 2026-10-17
+*
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v2.0
+* which accompanies this distribution, and is available at
+* https://www.eclipse.org/org/documents/epl-2.0/EPL-2.0.html
+*
+*****************************************************************************************/
+package org.leoneti.jdbc.redash;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.json.JSONObject;
+
+/**
+ * Payloads of /api/query_results/{id} by query_result_id. A query result never changes on Redash, so the entries don't
+ * expire: the least recently used are evicted above maxBytes (compressed, see RedashPayloadCodec). Thread-safe.
+ */
+class RedashResultCache {
+
+    private final Map<Integer,byte[]> results = new LinkedHashMap<Integer,byte[]>(64, 0.75f, true);
+    private final long maxBytes;
+    private long bytes = 0;
+
+    RedashResultCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * The payload of result_id, null when it isn't cached.
+     */
+    JSONObject get(int result_id) throws IOException {
+        final byte[] payload;
+        synchronized( this.results ) {
+            payload = this.results.get(result_id);
+        }
+        return payload == null ? null : RedashPayloadCodec.decode(payload);
+    }
+
+    void put(int result_id, JSONObject jo) throws IOException {
+        final byte[] payload = RedashPayloadCodec.encode(jo);
+        if( payload.length > this.maxBytes ) return;
+        synchronized( this.results ) {
+            final byte[] previous = this.results.put(result_id, payload);
+            if( previous != null ) this.bytes -= previous.length;
+            this.bytes += payload.length;
+            final Iterator<byte[]> iterator = this.results.values().iterator();
+            while( this.bytes > this.maxBytes && iterator.hasNext() ) {
+                this.bytes -= iterator.next().length;
+                iterator.remove();
+            }
+        }
+    }
+
+    void clear() {
+        synchronized( this.results ) {
+            this.results.clear();
+            this.bytes = 0;
+        }
+    }
+}
@@ -12,7 +12,9 @@
 *****************************************************************************************/
 package org.leoneti.jdbc.redash;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.sql.Date;
 import java.sql.JDBCType;
 import java.sql.ResultSet;
@@ -20,10 +22,11 @@ import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Time;
 import java.sql.Timestamp;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.logging.Level;
@@ -31,32 +34,61 @@ import java.util.logging.Logger;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
+import org.leoneti.jdbc.DateTimeParser;
 import org.leoneti.jdbc.GenericResultSet;
 import static java.sql.JDBCType.*;
 import static org.leoneti.Utils.toJDBCType;
 
 public class RedashResultSet extends GenericResultSet {
     
-    private JSONArray rows;
+    /**
+     * Rows decoded at a time on a streamed ResultSet
+     */
+    public static final int STREAM_BLOCK_SIZE = 1024;
+
+    /**
+     * Rows sampled to infer the type of the columns Redash sends without type
+     */
+    public static final int DEFAULT_TYPE_SAMPLE_ROWS = 100;
+
+    private RedashResultStream stream;
     private Iterator<Object> it;
     private Map<String, JDBCType> maptypes;
     private RedashResultSetMetaData metadata;
     private String dsType;
     
-    private JSONObject currentObj;
-    private Object lastObj;
+    private String[] columnNames;
+    private JDBCType[] types;
+    private boolean[] inferred;
+    private RedashColumn[] columns;
+    private int totalRows = -1;
+    private int blockRows = 0;
+    private int position = -1;
+    private boolean lastNull = true;
     private int rowNumber = 0;
     
-    public static SimpleDateFormat datetime_micro = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS"); //23
-    public static SimpleDateFormat datetime = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss"); //19
-    public static SimpleDateFormat date = new SimpleDateFormat("yyyy-MM-dd"); //10
-    public static SimpleDateFormat time_micro = new SimpleDateFormat("HH:mm:ss.SSS"); //12
-    public static SimpleDateFormat time = new SimpleDateFormat("HH:mm:ss"); //8
-    
-    public RedashResultSet(boolean trace, JSONArray cols, JSONArray rows, String dsType) {
+    public RedashResultSet(boolean trace, JSONArray cols, JSONArray rows, String dsType, int typeSampleRows) {
+        super(trace, RedashResultSet.class);
+        this.dsType = dsType;
+        init(cols, rows.iterator(), rows.length(), typeSampleRows);
+        // all rows are decoded at once, the JSON rows are not referenced anymore
+        this.totalRows = loadBlock();
+        this.it = Collections.emptyIterator();
+    }
+
+    /**
+     * Cursor mode: the rows are read from the stream while next() is called, the ResultSet can't be rewound.
+     * The metadata is the one of the first rows (see typeSampleRows): when a later value of an inferred column isn't of
+     * its type, getObject() returns the values of the column as sent from then on.
+     */
+    public RedashResultSet(boolean trace, RedashResultStream stream, String dsType, int typeSampleRows) {
         super(trace, RedashResultSet.class);
         this.dsType = dsType;
-        this.rows = rows;
+        this.stream = stream;
+        init(stream.getColumns(), stream, STREAM_BLOCK_SIZE, typeSampleRows);
+    }
+
+    private void init(JSONArray cols, Iterator<Object> it, int capacity, int typeSampleRows) {
         maptypes = new LinkedHashMap<String, JDBCType>(10);
         //final JSONObject firstObj = rows.isEmpty() ? null : rows.getJSONObject(0);
         for(Object obj : cols ) {
@@ -78,9 +110,19 @@ public class RedashResultSet extends GenericResultSet {
                 maptypes.put( colName, JAVA_OBJECT );
             }
         }
+        this.columnNames = maptypes.keySet().toArray(new String[maptypes.size()]);
+        this.inferred = new boolean[columnNames.length];
+        this.it = it;
+        if( maptypes.containsValue(JAVA_OBJECT) && typeSampleRows > 0 ) {
+            inferTypes(typeSampleRows);
+        }
         if(isTraced()) Logger.getLogger("redash.jdbc").log(Level.INFO, maptypes.toString() );
         this.metadata = new RedashResultSetMetaData(isTraced(), maptypes);
-        this.it = this.rows.iterator();
+        this.types = maptypes.values().toArray(new JDBCType[maptypes.size()]);
+        this.columns = new RedashColumn[columnNames.length];
+        for(int i=0; i < columnNames.length; i++) {
+            this.columns[i] = inferred[i] ? RedashColumn.createInferred(types[i], capacity) : RedashColumn.create(types[i], capacity);
+        }
         this.rowNumber = 1;
         //for(Object obj : jo.getJSONObject("query_result").getJSONObject("data").getJSONArray("rows") ) {
         //    JSONObject row = (JSONObject) obj;
@@ -88,10 +130,109 @@ public class RedashResultSet extends GenericResultSet {
         //}
     }
 
+    /**
+     * Types the JAVA_OBJECT (untyped) columns once from the first sampleRows rows, the sampled rows are put back in front of the iterator.
+     */
+    private void inferTypes(int sampleRows) {
+        final List<Object> sample = new ArrayList<Object>(Math.min(sampleRows, 1024));
+        while( sample.size() < sampleRows && it.hasNext() ) sample.add( it.next() );
+        for(int i=0; i < columnNames.length; i++) {
+            if( maptypes.get(columnNames[i]) != JAVA_OBJECT ) continue;
+            JDBCType type = null;
+            for(Object row : sample) {
+                type = merge( type, inferType( ((JSONObject) row).opt(columnNames[i]) ) );
+                if( type == JAVA_OBJECT ) break;
+            }
+            if( type != null && type != JAVA_OBJECT ) {
+                maptypes.put( columnNames[i], type );
+                this.inferred[i] = true;
+            }
+        }
+        final Iterator<Object> sampled = sample.iterator();
+        final Iterator<Object> rest = it;
+        this.it = new Iterator<Object>() {
+            @Override public boolean hasNext() { return sampled.hasNext() || rest.hasNext(); }
+            @Override public Object next() { return sampled.hasNext() ? sampled.next() : rest.next(); }
+        };
+    }
+
+    /**
+     * Type of one value, null for SQL NULL and JAVA_OBJECT when it can't be told.
+     */
+    private static JDBCType inferType(Object value) {
+        if( value == null || JSONObject.NULL.equals(value) ) return null;
+        if( value instanceof Boolean ) return BOOLEAN;
+        if( value instanceof Integer || value instanceof Long || value instanceof BigInteger ) return BIGINT;
+        if( value instanceof Number ) return DOUBLE;
+        if( !(value instanceof String) ) return JAVA_OBJECT;
+        final String str = (String) value;
+        final Object temporal = DateTimeParser.parse( str );
+        if( temporal instanceof Timestamp ) return TIMESTAMP;
+        if( temporal instanceof Date ) return DATE;
+        if( temporal instanceof Time ) return TIME;
+        if( isNumber(str) && !hasLeadingZero(str) ) return str.indexOf('.') < 0 && str.length() < 19 ? BIGINT : DOUBLE;
+        return VARCHAR;
+    }
+
+    /**
+     * 00123 is a code (zip, account), not a number: it would lose its zeros.
+     */
+    private static boolean hasLeadingZero(String str) {
+        final int p = str.startsWith("-") ? 1 : 0;
+        return str.length() > p + 1 && str.charAt(p) == '0' && str.charAt(p + 1) != '.';
+    }
+
+    private static boolean isNumber(String str) {
+        int digits = 0, dots = 0;
+        for(int i=0; i < str.length(); i++) {
+            final char c = str.charAt(i);
+            if( c >= '0' && c <= '9' ) digits++;
+            else if( c == '.' && ++dots == 1 ) continue;
+            else if( c != '-' || i > 0 ) return false;
+        }
+        return digits > 0;
+    }
+
+    private static JDBCType merge(JDBCType current, JDBCType value) {
+        if( current == null ) return value;
+        if( value == null || value == current ) return current;
+        if( (current == BIGINT && value == DOUBLE) || (current == DOUBLE && value == BIGINT) ) return DOUBLE;
+        if( (current == TIMESTAMP && value == DATE) || (current == DATE && value == TIMESTAMP) ) return TIMESTAMP;
+        return JAVA_OBJECT;
+    }
+
+    /**
+     * Decodes the next rows of the iterator into the columns: all of them on a materialized ResultSet, STREAM_BLOCK_SIZE on a streamed one.
+     */
+    private int loadBlock() {
+        for(RedashColumn col : columns) col.clear();
+        int count = 0;
+        while( it.hasNext() && (stream == null || count < STREAM_BLOCK_SIZE) ) {
+            final JSONObject row = (JSONObject) it.next();
+            for(int i=0; i < columns.length; i++) {
+                final Object value = row.opt(columnNames[i]);
+                if( !columns[i].add(value) ) {
+                    columns[i] = columns[i].asObjectColumn();
+                    columns[i].add(value);
+                    if( inferred[i] ) {
+                        // a value after the sample doesn't match the inferred type: a streamed ResultSet keeps its
+                        // metadata, the caller may have read it already
+                        types[i] = JAVA_OBJECT;
+                        if( stream == null ) maptypes.put( columnNames[i], JAVA_OBJECT );
+                    }
+                }
+            }
+            count++;
+        }
+        this.blockRows = count;
+        this.position = -1;
+        return count;
+    }
+
     public String getDsType() { return dsType; }
 
-    public RedashResultSet(boolean trace, JSONObject jo, String dsType) {
-    	this(trace, jo.getJSONObject("query_result").getJSONObject("data").getJSONArray("columns") ,  jo.getJSONObject("query_result").getJSONObject("data").getJSONArray("rows"), dsType );
+    public RedashResultSet(boolean trace, JSONObject jo, String dsType, int typeSampleRows) {
+    	this(trace, jo.getJSONObject("query_result").getJSONObject("data").getJSONArray("columns") ,  jo.getJSONObject("query_result").getJSONObject("data").getJSONArray("rows"), dsType, typeSampleRows );
     }
     
     @Override
@@ -101,9 +242,13 @@ public class RedashResultSet extends GenericResultSet {
     
     @Override
     public boolean next() throws SQLException {
-        if( it.hasNext() ) {
+        // it, not the stream: the rows sampled by inferTypes() were already read from it
+        if( position + 1 >= blockRows && stream != null && it.hasNext() ) {
+            loadBlock();
+        }
+        if( position + 1 < blockRows ) {
         	logMethodWithReturn("next", true);
-            this.currentObj = (JSONObject) it.next();
+            this.position++;
             this.rowNumber++;
             return true;
         }
@@ -111,6 +256,23 @@ public class RedashResultSet extends GenericResultSet {
         return false;
     }
 
+    /**
+     * Value of the column on the last row of a materialized ResultSet as it was decoded, the cursor doesn't move.
+     */
+    Object getLastRowObject(int columnIndex) throws SQLException {
+        if( this.stream != null || this.totalRows <= 0 ) throw new SQLException( "No last row" );
+        if( columnIndex < 1 || columnIndex > columns.length ) throw new SQLException( String.format("Column index %d out of range", columnIndex) );
+        final RedashColumn col = columns[columnIndex-1];
+        return col.isNull(totalRows-1) ? null : col.get(totalRows-1);
+    }
+
+    /**
+     * Number of rows of a materialized ResultSet, -1 when streamed
+     */
+    public int getRowCount() {
+        return totalRows;
+    }
+
     @Override
     public ResultSetMetaData getMetaData() throws SQLException {
         return this.metadata;
@@ -120,166 +282,127 @@ public class RedashResultSet extends GenericResultSet {
         return this.metadata;
     }
 
-    private Object readObject(String columnLabel) {
-        this.lastObj = currentObj.isNull(columnLabel) ? null : currentObj.get( columnLabel );
-        return this.lastObj;
+    private RedashColumn readColumn(int columnIndex) throws SQLException {
+        if( columnIndex < 1 || columnIndex > columns.length ) throw new SQLException( String.format("Column index %d out of range", columnIndex) );
+        if( position < 0 ) throw new SQLException( "No current row" );
+        final RedashColumn col = columns[columnIndex-1];
+        this.lastNull = col.isNull(position);
+        return col;
+    }
+
+    private Object readObject(int columnIndex) throws SQLException {
+        final RedashColumn col = readColumn( columnIndex );
+        return this.lastNull ? null : col.get(position);
     }
 
     @Override
     public Object getObject(String columnLabel) throws SQLException {
-        switch( maptypes.get(columnLabel) ) {
+        return getObject( findColumn(columnLabel) );
+    }
+
+    @Override
+    public Object getObject(int columnIndex) throws SQLException {
+        if( columnIndex < 1 || columnIndex > types.length ) throw new SQLException( String.format("Column index %d out of range", columnIndex) );
+        final Object value;
+        switch( types[columnIndex-1] ) {
             case TIME_WITH_TIMEZONE:
-            case TIME: return getTime(columnLabel);
-            case DATE: return getDate(columnLabel);
+            case TIME: value = getTime(columnIndex); break;
+            case DATE: value = getDate(columnIndex); break;
             case TIMESTAMP_WITH_TIMEZONE:
-            case TIMESTAMP: return getTimestamp(columnLabel);
+            case TIMESTAMP: value = getTimestamp(columnIndex); break;
             case REAL:
             case DECIMAL:
-            case NUMERIC: return getBigDecimal(columnLabel);
-            case DOUBLE: return getDouble(columnLabel);
-            case FLOAT: return getFloat(columnLabel);
+            case NUMERIC: value = getBigDecimal(columnIndex); break;
+            case DOUBLE: value = getDouble(columnIndex); break;
+            case FLOAT: value = getFloat(columnIndex); break;
             case TINYINT:
             case SMALLINT:
-            case INTEGER: return getInt(columnLabel);
-            case BIGINT: return getLong(columnLabel);
-            case BOOLEAN: return getBoolean(columnLabel);
-            case JAVA_OBJECT: return getJavaObject(columnLabel);
-            //case ARRAY: return getArray(columnLabel);
+            case INTEGER: value = getInt(columnIndex); break;
+            case BIGINT: value = getLong(columnIndex); break;
+            case BOOLEAN: value = getBoolean(columnIndex); break;
+            case JAVA_OBJECT: value = readObject(columnIndex); break;
+            //case ARRAY: return getArray(columnIndex);
             default:
-                return getString(columnLabel);
+                value = getString(columnIndex);
         }
-    }
-
-    @Override
-    public Object getObject(int columnIndex) throws SQLException {
-        return getObject( metadata.getColumnName(columnIndex) );
+        return this.lastNull ? null : value;
     }
     
-    private Object getJavaObject(String columnLabel) throws SQLException {
-        readObject( columnLabel );
-        if( wasNull() ) return null;
-        final String strObj = this.lastObj.toString().trim();
-        final int len = strObj.length();
-        if( len == 23 && strObj.matches("\\d\\d\\d\\d-\\d\\d-\\d\\dT\\d\\d\\:\\d\\d\\:\\d\\d\\.\\d\\d\\d") ) {
-            try {
-                return new Timestamp( datetime_micro.parse( strObj ).getTime() ); //yyyy-MM-dd'T'HH:mm:ss.SSS
-            } catch (ParseException e) {}
-        }        
-        if( len == 19 && strObj.matches("\\d\\d\\d\\d-\\d\\d-\\d\\dT\\d\\d\\:\\d\\d\\:\\d\\d") ) {
-            try {
-                return new Timestamp( datetime.parse( strObj ).getTime() ); //yyyy-MM-dd'T'HH:mm:ss
-            } catch (ParseException e) {}
-        }        
-        if( len == 10 && strObj.matches("\\d\\d\\d\\d-\\d\\d-\\d\\d") ) {
-            try {
-                return new Date( date.parse( strObj ).getTime() ); //yyyy-MM-dd
-            } catch (ParseException e) {}
-        }        
-        if( len == 12 && strObj.matches("\\d\\d\\:\\d\\d\\:\\d\\d\\.\\d\\d\\d") ) {
-            try {
-                return new Time( time_micro.parse( strObj ).getTime() ); //HH:mm:ss.SSS
-            } catch (ParseException e) {}
-        }        
-        if( len == 8 && strObj.matches("\\d\\d\\:\\d\\d\\:\\d\\d") ) {
-            try {
-                return new Timestamp( time.parse( strObj ).getTime() ); //HH:mm:ss
-            } catch (ParseException e) {}
-        }
-        if( strObj.matches("[\\d\\.-]+") ) {
-            try {
-                return Long.parseLong( strObj );
-            } catch (NumberFormatException e) {
-                try {
-                    return Double.parseDouble( strObj );
-                } catch (NumberFormatException ee) {}
-            }
-        }
-        return this.lastObj;
-    }
-
     @Override
     public Timestamp getTimestamp(String columnLabel) throws SQLException {
-        readObject( columnLabel );
-        try {
-            return wasNull()?null:new Timestamp( datetime_micro.parse( this.lastObj.toString() ).getTime() );
-        } catch (ParseException e) {
-            try {
-                return wasNull()?null:new Timestamp( datetime.parse( this.lastObj.toString() ).getTime() );
-            } catch (ParseException ee) {
-                throw new SQLException(e);
-            }
-        }
+        return getTimestamp( findColumn(columnLabel) );
     }
 
     @Override
     public Timestamp getTimestamp(int columnIndex) throws SQLException {
-        return getTimestamp( metadata.getColumnName(columnIndex) );
+        final String str = getString( columnIndex );
+        return wasNull()?null:DateTimeParser.parseTimestamp( str );
     }
 
     @Override
     public String getString(String columnLabel) throws SQLException {
-        readObject( columnLabel );
-        return wasNull()?null:this.lastObj.toString();
+        return getString( findColumn(columnLabel) );
     }
 
     @Override
     public String getString(int columnIndex) throws SQLException {
-        return getString( metadata.getColumnName(columnIndex) );
+        final RedashColumn col = readColumn( columnIndex );
+        return wasNull()?null:col.getString(position);
     }
 
     @Override
     public int getInt(String columnLabel) throws SQLException {
-        readObject( columnLabel );
-        return wasNull() ? -1 : currentObj.getNumber( columnLabel ).intValue();
+        return getInt( findColumn(columnLabel) );
     }
 
     @Override
     public int getInt(int columnIndex) throws SQLException {
-        return getInt( metadata.getColumnName(columnIndex) );
+        final RedashColumn col = readColumn( columnIndex );
+        return wasNull() ? -1 : (int) col.getLong(position);
     }
 
     @Override
     public long getLong(String columnLabel) throws SQLException {
-        readObject(columnLabel);
-        return wasNull() ? -1L : currentObj.getNumber(columnLabel).longValue();
+        return getLong( findColumn(columnLabel) );
     }
 
     @Override
     public long getLong(int columnIndex) throws SQLException {
-        return getLong( metadata.getColumnName(columnIndex) );
+        final RedashColumn col = readColumn( columnIndex );
+        return wasNull() ? -1L : col.getLong(position);
     }
 
     @Override
     public float getFloat(String columnLabel) throws SQLException {
-        readObject( columnLabel );
-        return wasNull() ? -1F : currentObj.getNumber( columnLabel ).floatValue();
+        return getFloat( findColumn(columnLabel) );
     }
 
     @Override
     public float getFloat(int columnIndex) throws SQLException {
-        return getFloat( metadata.getColumnName(columnIndex) );
+        final RedashColumn col = readColumn( columnIndex );
+        return wasNull() ? -1F : (float) col.getDouble(position);
     }
 
     @Override
     public double getDouble(String columnLabel) throws SQLException {
-        readObject( columnLabel );
-        return wasNull() ? -1D : currentObj.getNumber( columnLabel ).doubleValue();
+        return getDouble( findColumn(columnLabel) );
     }
 
     @Override
     public double getDouble(int columnIndex) throws SQLException {
-        return getDouble( metadata.getColumnName(columnIndex) );
+        final RedashColumn col = readColumn( columnIndex );
+        return wasNull() ? -1D : col.getDouble(position);
     }
 
     @Override
     public BigDecimal getBigDecimal(String columnLabel) throws SQLException {
-        readObject( columnLabel );
-        return wasNull() ? null : currentObj.getBigDecimal( columnLabel );
+        return getBigDecimal( findColumn(columnLabel) );
     }
 
     @Override
     public BigDecimal getBigDecimal(int columnIndex) throws SQLException {
-        return getBigDecimal( metadata.getColumnName(columnIndex) );
+        final RedashColumn col = readColumn( columnIndex );
+        return wasNull() ? null : col.getBigDecimal(position);
     }
 
     @Override
@@ -294,60 +417,60 @@ public class RedashResultSet extends GenericResultSet {
 
     @Override
     public boolean getBoolean(String columnLabel) throws SQLException {
-        readObject( columnLabel );
-        return wasNull() ? false : currentObj.getBoolean( columnLabel );
+        return getBoolean( findColumn(columnLabel) );
     }
 
     @Override
     public boolean getBoolean(int columnIndex) throws SQLException {
-        return getBoolean( metadata.getColumnName(columnIndex) );
+        final RedashColumn col = readColumn( columnIndex );
+        return wasNull() ? false : col.getBoolean(position);
     }
     
     @Override
-    public Date getDate(int columnIndex) throws SQLException {
-        return getDate( metadata.getColumnName(columnIndex) );
+    public Date getDate(String columnLabel) throws SQLException {
+        return getDate( findColumn(columnLabel) );
     }
     
     @Override
-    public Date getDate(String columnLabel) throws SQLException {
-        final Timestamp dt = getTimestamp(columnLabel);
-        if( dt != null ) {
-            return new Date( dt.getTime() );
-        }
-        return null;
+    public Date getDate(int columnIndex) throws SQLException {
+        final String str = getString( columnIndex );
+        return wasNull()?null:DateTimeParser.parseDate( str );
     }
     
     @Override
-    public Time getTime(int columnIndex) throws SQLException {
-        return getTime( metadata.getColumnName(columnIndex) );
+    public Time getTime(String columnLabel) throws SQLException {
+        return getTime( findColumn(columnLabel) );
     }
     
     @Override
-    public Time getTime(String columnLabel) throws SQLException {
-        final Timestamp dt = getTimestamp(columnLabel);
-        if( dt != null ) {
-            return new Time( dt.getTime() );
-        }
-        return null;
+    public Time getTime(int columnIndex) throws SQLException {
+        final String str = getString( columnIndex );
+        return wasNull()?null:DateTimeParser.parseTime( str );
     }
 
     @Override
     public boolean wasNull() throws SQLException {
-        return this.lastObj == null || this.lastObj.equals(JSONObject.NULL);
+        return this.lastNull;
     }
     
     @Override
     public void close() throws SQLException {
-    	this.rows = null;
-    	this.currentObj = null;
+        if( this.stream != null ) {
+            try {
+                this.stream.close();
+            } catch (IOException e) {
+                throw new SQLException(e);
+            }
+            this.stream = null;
+        }
+    	this.columns = null;
     	this.it = null;
-    	this.lastObj = null;
     	this.maptypes = null;
     	this.metadata = null;
     }
 
     @Override
-    public boolean isClosed() throws SQLException { return this.rows == null; }
+    public boolean isClosed() throws SQLException { return this.it == null; }
 
     @Override
     public int findColumn(String columnLabel) throws SQLException {
@@ -362,13 +485,19 @@ public class RedashResultSet extends GenericResultSet {
 
     @Override
     public boolean isLast() throws SQLException {
-    	logMethodWithReturn("isLast", this.rowNumber == this.rows.length()+1);
-        return this.rowNumber == this.rows.length()+1;
+        if( this.stream != null ) {
+            logMethodWithReturn("isLast", this.rowNumber > 1 && position + 1 >= blockRows && !this.it.hasNext());
+            return this.rowNumber > 1 && position + 1 >= blockRows && !this.it.hasNext();
+        }
+    	logMethodWithReturn("isLast", this.rowNumber == this.totalRows+1);
+        return this.rowNumber == this.totalRows+1;
     }
 
     @Override
     public boolean first() throws SQLException {
-        this.it = this.rows.iterator();
+        if( this.stream != null )
+            throw new SQLException( String.format("%s ResultSet.first() on a streamed ResultSet", RedashResource.getString("methodNotSupported")) );
+        this.position = -1;
         this.rowNumber = 1;
         return true;
     }
@@ -387,8 +516,12 @@ public class RedashResultSet extends GenericResultSet {
 
     @Override
     public int getFetchSize() throws SQLException {
-    	logMethodWithReturn("getFetchSize", this.rows.length());
-        return this.rows.length();
+        if( this.stream != null ) {
+            logMethodWithReturn("getFetchSize", STREAM_BLOCK_SIZE);
+            return STREAM_BLOCK_SIZE;
+        }
+    	logMethodWithReturn("getFetchSize", this.totalRows);
+        return this.totalRows;
     }
 
     @Override
@@ -14,7 +14,6 @@ package org.leoneti.jdbc.redash;
 
 import java.sql.JDBCType;
 import java.sql.SQLException;
-import java.util.Arrays;
 import java.util.Map;
 
 import org.leoneti.jdbc.GenericResultSetMetaData;
@@ -29,6 +28,7 @@ public class RedashResultSetMetaData extends GenericResultSetMetaData {
     public RedashResultSetMetaData(boolean trace, Map<String, JDBCType> maptypes) {
         super(trace, RedashResultSetMetaData.class);
         this.maptypes = maptypes;
+        setColumnNames(maptypes.keySet());
     }
 
     @Override
@@ -36,17 +36,6 @@ public class RedashResultSetMetaData extends GenericResultSetMetaData {
         return maptypes.size();
     }
 
-    @Override
-    public String getColumnName(int column) throws SQLException {
-        logMethod("getColumnName", column);
-        return maptypes.keySet().toArray()[column - 1].toString();
-    }
-    
-    public int findColumn(String columnLabel) throws SQLException {
-        logMethod("findColumn", columnLabel);
-        return Arrays.binarySearch( maptypes.keySet().toArray(), columnLabel )+1;
-    }
-
     @Override
     public String getColumnLabel(int column) throws SQLException {
         logMethod_("getColumnLabel", true , column);
@@ -0,0 +1,180 @@
+/*****************************************************************************************
+* Copyright (C) 2023-2026  Ricardo Leoneti                           Date: 2026-10-17
+*
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v2.0
+* which accompanies this distribution, and is available at
+* https://www.eclipse.org/org/documents/epl-2.0/EPL-2.0.html
+*
+*****************************************************************************************/
+package org.leoneti.jdbc.redash;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * Reads a /api/query_results/{id} payload while it is downloaded: the "columns" are read first and the
+ * "rows" are handed one at a time, so only the current row is held in memory.
+ * Rows sent before the columns are buffered (Redash sends the columns first).
+ */
+public class RedashResultStream implements Iterator<Object>, Closeable {
+
+    private InputStream is;
+    private JSONTokener tokener;
+    private JSONArray columns;
+    private JSONArray bufferedRows;
+    private Iterator<Object> bufferedIt;
+    private JSONObject queryResult = new JSONObject();
+    private Object nextRow;
+    private boolean firstRow = true;
+    private boolean finished = false;
+
+    public RedashResultStream(InputStream is) throws IOException {
+        this.is = is;
+        this.tokener = new JSONTokener( new BufferedReader( new InputStreamReader(is, StandardCharsets.UTF_8), 64*1024 ) );
+        try {
+            expect('{');
+            if( !seekKey("query_result", null) ) throw tokener.syntaxError("query_result not found");
+            expect('{');
+            if( !seekKey("data", queryResult) ) throw tokener.syntaxError("data not found");
+            expect('{');
+            readData();
+        } catch (JSONException e) {
+            close();
+            throw new IOException(e);
+        }
+    }
+
+    public JSONArray getColumns() {
+        return columns;
+    }
+
+    /**
+     * query_result fields other than data (id, runtime, retrieved_at...), complete after the last row was read.
+     */
+    public JSONObject getQueryResult() {
+        return queryResult;
+    }
+
+    private void expect(char c) {
+        final char n = tokener.nextClean();
+        if( n != c ) throw tokener.syntaxError(String.format("Expected '%s' and instead saw '%s'", c, n));
+    }
+
+    private String nextKey() {
+        char c = tokener.nextClean();
+        if( c == ',' ) c = tokener.nextClean();
+        if( c == '}' ) return null;
+        if( c != '"' && c != '\'' ) throw tokener.syntaxError("A JSONObject text must begin with a key");
+        final String key = tokener.nextString(c);
+        expect(':');
+        return key;
+    }
+
+    /**
+     * Skips the members of the current object until key, the skipped members are kept on holder.
+     */
+    private boolean seekKey(String key, JSONObject holder) {
+        String k;
+        while( (k = nextKey()) != null ) {
+            if( k.equals(key) ) return true;
+            final Object value = tokener.nextValue();
+            if( holder != null ) holder.put(k, value);
+        }
+        return false;
+    }
+
+    /**
+     * Reads data members until the rows are positioned to be streamed, or to the end of data when the rows came first.
+     */
+    private void readData() {
+        String k;
+        while( (k = nextKey()) != null ) {
+            if( k.equals("columns") ) {
+                this.columns = (JSONArray) tokener.nextValue();
+            } else if( k.equals("rows") ) {
+                if( this.columns != null ) {
+                    expect('[');
+                    return;
+                }
+                this.bufferedRows = (JSONArray) tokener.nextValue();
+            } else {
+                tokener.nextValue();
+            }
+        }
+        if( this.columns == null ) throw tokener.syntaxError("columns not found");
+        this.bufferedIt = this.bufferedRows == null ? new JSONArray().iterator() : this.bufferedRows.iterator();
+        finish();
+    }
+
+    private Object readRow() {
+        char c = tokener.nextClean();
+        if( !firstRow && c == ',' ) c = tokener.nextClean();
+        firstRow = false;
+        if( c == ']' ) {
+            // rest of data and query_result (runtime, retrieved_at...)
+            String k;
+            while( (k = nextKey()) != null ) tokener.nextValue();
+            finish();
+            return null;
+        }
+        tokener.back();
+        return tokener.nextValue();
+    }
+
+    private void finish() {
+        String k;
+        while( (k = nextKey()) != null ) queryResult.put(k, tokener.nextValue());
+        this.finished = true;
+        try {
+            close();
+        } catch (IOException e) {
+            RedashDriver.log.log(Level.WARNING, e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if( bufferedIt != null ) return bufferedIt.hasNext();
+        if( nextRow == null && !finished ) {
+            nextRow = readRow();
+        }
+        return nextRow != null;
+    }
+
+    @Override
+    public Object next() {
+        if( !hasNext() ) throw new NoSuchElementException();
+        if( bufferedIt != null ) return bufferedIt.next();
+        final Object row = nextRow;
+        nextRow = null;
+        return row;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if( is != null ) {
+            try {
+                is.close();
+            } finally {
+                is = null;
+                if( !finished ) {
+                    finished = true;
+                    bufferedIt = null;
+                }
+            }
+        }
+    }
+}
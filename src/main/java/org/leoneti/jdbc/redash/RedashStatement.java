@@ -47,7 +47,16 @@ public class RedashStatement extends GenericStatement {
     @Override
     public ResultSet executeQuery(String sql) throws SQLException {
         logMethod("executeQuery", sql);
+        // closed with the statement, or when it runs again: a streamed one holds an HTTP connection until it is read or
+        // closed, a paginator its prefetched pages
+        if( this.rs != null ) this.rs.close();
+        this.rs = null;
+        execQueryCommand.reset();
+        this.rs = query(sql);
+        return this.rs;
+    }
 
+    private ResultSet query(String sql) throws SQLException {
         if( sql.trim().matches( RedashCommands.QUERIES.regex() ) ) {
             return con.getQueryCommand().get(false, true);
         } else if( sql.trim().matches( RedashCommands.MY_QUERIES.regex() ) || sql.trim().matches( RedashCommands.MYQUERIES.regex() ) ) {
@@ -83,12 +92,20 @@ public class RedashStatement extends GenericStatement {
                 }
             } else if( commandType == RedashCommands.PAGINATOR ) {
                 return new RedashPaginatorResultSet(con, execQueryCommand, m.group(1), m.group(2), con.getDsType() );
+            } else if( con.isResultSetStreaming() && execQueryCommand.cachedResult(sql.trim()) == null ) {
+                this.sql = sql.trim();
+                // the result the submit was answered with is not downloaded again
+                jo = execQueryCommand.executeForResult(this.sql);
+                if( jo == null ) {
+                    return new RedashResultSet(con.isResultSetTraced(), execQueryCommand.streamResultsByQueryDataId(execQueryCommand.getLastResultId()),
+                            con.getDsType(), con.getTypeSampleRows());
+                }
             } else {
                 this.sql = sql.trim();
                 jo = execQueryCommand.executeQuery(this.sql);
             }
-            RedashDriver.log.info( jo.toString() );
-            return new RedashResultSet(con.isResultSetTraced(), jo, con.getDsType());
+            if( isTraced() ) RedashDriver.log.info( jo.toString() );
+            return new RedashResultSet(con.isResultSetTraced(), jo, con.getDsType(), con.getTypeSampleRows());
         }
     }
     
@@ -120,6 +137,7 @@ public class RedashStatement extends GenericStatement {
 
     @Override
     public void close() throws SQLException {
+        if( this.rs != null ) this.rs.close();
     	this.con = null;
     	this.rs = null;
     	this.sql = null;
@@ -127,8 +145,14 @@ public class RedashStatement extends GenericStatement {
 
     @Override
     public void setQueryTimeout(int seconds) throws SQLException {
-        // TODO Auto-generated method stub
-        throw new SQLException();
+        logMethod("setQueryTimeout", seconds);
+        if( seconds < 0 ) throw new SQLException( "Query timeout must be >= 0: " + seconds );
+        execQueryCommand.setQueryTimeout(seconds);
+    }
+
+    @Override
+    public int getQueryTimeout() throws SQLException {
+        return execQueryCommand.getQueryTimeout();
     }
 
     @Override
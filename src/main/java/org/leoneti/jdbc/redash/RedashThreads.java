@@ -0,0 +1,127 @@
+/*****************************************************************************************
+* Copyright (C) 2023-2026  Ricardo Leoneti                           Date: 2026-10-17
+*
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v2.0
+* which accompanies this distribution, and is available at
+* https://www.eclipse.org/org/documents/epl-2.0/EPL-2.0.html
+*
+*****************************************************************************************/
+package org.leoneti.jdbc.redash;
+
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Background threads of the driver are daemons, they never keep the JVM of the application alive.
+ */
+public final class RedashThreads {
+
+    /**
+     * Threads of background(), they end when idle.
+     */
+    public static final int BACKGROUND_THREADS = 2;
+
+    private static ScheduledExecutorService scheduler;
+    private static ExecutorService background;
+
+    private RedashThreads() {
+    }
+
+    /**
+     * One thread shared by the periodic housekeeping of the driver (cache sweeps), the tasks must be short.
+     */
+    public static synchronized ScheduledExecutorService scheduler() {
+        if( scheduler == null ) {
+            final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, daemon("redash-scheduler"));
+            executor.setRemoveOnCancelPolicy(true);
+            scheduler = executor;
+        }
+        return scheduler;
+    }
+
+    /**
+     * Few threads shared by the background work that talks to Redash (cache refreshes), the tasks wait in a queue.
+     */
+    public static synchronized ExecutorService background() {
+        if( background == null ) {
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(BACKGROUND_THREADS, BACKGROUND_THREADS, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), daemon("redash-background"));
+            executor.allowCoreThreadTimeOut(true);
+            background = executor;
+        }
+        return background;
+    }
+
+    public static ThreadFactory daemon(final String name) {
+        final AtomicInteger count = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        };
+    }
+
+    /**
+     * A future completed like future, canceling it doesn't cancel future (a caller can give up waiting for a shared one).
+     */
+    public static <T> CompletableFuture<T> follow(CompletableFuture<T> future) {
+        final CompletableFuture<T> follower = new CompletableFuture<T>();
+        future.whenComplete( new BiConsumer<T,Throwable>() {
+            @Override
+            public void accept(T value, Throwable e) {
+                if( e == null ) {
+                    follower.complete(value);
+                } else {
+                    follower.completeExceptionally(e);
+                }
+            }
+        });
+        return follower;
+    }
+
+    /**
+     * Waits for future, the SQLException thrown by the task is rethrown as is.
+     */
+    public static <T> T get(Future<T> future) throws SQLException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(e);
+        } catch (ExecutionException e) {
+            if( e.getCause() instanceof SQLException ) throw (SQLException) e.getCause();
+            throw new SQLException(e.getCause());
+        }
+    }
+
+    /**
+     * Waits at most millis for future, like get(future).
+     */
+    public static <T> T get(Future<T> future, long millis) throws SQLException, TimeoutException {
+        try {
+            return future.get(millis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(e);
+        } catch (ExecutionException e) {
+            if( e.getCause() instanceof SQLException ) throw (SQLException) e.getCause();
+            throw new SQLException(e.getCause());
+        }
+    }
+}
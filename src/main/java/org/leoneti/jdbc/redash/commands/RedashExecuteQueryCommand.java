@@ -12,9 +12,21 @@
 *****************************************************************************************/
 package org.leoneti.jdbc.redash.commands;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.json.JSONObject;
 import org.leoneti.jdbc.redash.RedashCacheControl;
@@ -22,39 +34,103 @@ import org.leoneti.jdbc.redash.RedashConnection;
 import org.leoneti.jdbc.redash.RedashDriver;
 import org.leoneti.jdbc.redash.RedashException;
 import org.leoneti.jdbc.redash.RedashHttp;
+import org.leoneti.jdbc.redash.RedashJobPoller;
+import org.leoneti.jdbc.redash.RedashResource;
+import org.leoneti.jdbc.redash.RedashResultStream;
+import org.leoneti.jdbc.redash.RedashThreads;
 
 public class RedashExecuteQueryCommand implements Cloneable {
 
-    private boolean cancelExecution = false;
-    private RedashQueryCommand queryCommand;
+    /**
+     * /*+ max_age=600 *&#47; leading the statement, or after its first keyword (SELECT /*+ max_age=600 *&#47; ...): Redash may
+     * answer with a result of the same query up to 600 seconds old. Matched with lookingAt(), the same text in a literal or
+     * in a comment further on is not a hint.
+     */
+    public static final Pattern MAX_AGE_HINT = Pattern.compile("\\s*(?:[a-z]+\\s*)?/\\*\\+\\s*max_age\\s*=\\s*(\\d+)\\s*\\*/", Pattern.CASE_INSENSITIVE);
+
+    private volatile boolean cancelExecution = false;
+    private final Set<CompletableFuture<?>> waiting = Collections.newSetFromMap(new ConcurrentHashMap<CompletableFuture<?>,Boolean>());
+    private RedashExecuteQueryCommand parent;
+    private int queryTimeout = 0;
+    private long deadline = 0;
+    private RedashQueryPool queryPool;
     private RedashHttp rh;
     private int last_result_id;
     private RedashCacheControl cacheControl;
+    private RedashConnection con;
+    private RedashCacheControl.Refresher refresher;
 
     public RedashExecuteQueryCommand(RedashConnection con) {
-        this.queryCommand = con.getQueryCommand();
+        this.con = con;
+        this.refresher = new ConnectionRefresher(con);
+        this.queryPool = con.getQueryPool();
         this.rh = con.getRedashHttp().copy();
         this.last_result_id = -1;
         this.cacheControl = con.getCacheControl();
     }
 
+    /**
+     * A command of the same connection and query timeout with its own execution state, for an execution running
+     * at the same time as the ones of this command (the pages of the paginator). cancel() of this command cancels it too.
+     */
+    public RedashExecuteQueryCommand clone() {
+        final RedashExecuteQueryCommand command = new RedashExecuteQueryCommand(this.con);
+        command.queryTimeout = this.queryTimeout;
+        command.parent = this;
+        return command;
+    }
+
+    /**
+     * The query_result_id of an execution, with its result when Redash answered the submit with it (null otherwise).
+     */
+    private static class Executed {
+        final int result_id;
+        final JSONObject payload;
+        Executed(int result_id, JSONObject payload) {
+            this.result_id = result_id;
+            this.payload = payload;
+        }
+    }
+
+    /**
+     * Refreshes the cache entries with a new command of the connection, while it is open (and not collected, the cache
+     * may outlive it).
+     */
+    private static class ConnectionRefresher implements RedashCacheControl.Refresher {
+        private final WeakReference<RedashConnection> ref;
+        ConnectionRefresher(RedashConnection con) {
+            this.ref = new WeakReference<RedashConnection>(con);
+        }
+        @Override
+        public void refresh(String catalog, String query) throws SQLException {
+            final RedashConnection con = ref.get();
+            if( con == null || con.isClosed() ) return;
+            new RedashExecuteQueryCommand(con).refresh(catalog, query);
+        }
+    }
+
     public int getQueryId() {
-        return getQueryCommand().getQueryId();
+        return con.getQueryCommand().getQueryId();
     }
     
     private RedashHttp getRedashHttp() {
         return rh;
     }
     
-    private RedashQueryCommand getQueryCommand() {
-        return queryCommand;
-    }
-
     protected boolean isTraced() {
-        return queryCommand.isTraced();
+        return con.isTraced();
     }
 
+    /**
+     * The latest result of the query queryId. With the result cache only the query is requested when its
+     * latest_query_data_id is cached.
+     */
     public JSONObject results(int queryId) throws SQLException {
+        if( this.cacheControl.hasResultCache() ) {
+            final JSONObject query = new JSONObject( getRedashHttp().get("/api/queries/%d", queryId).toString() );
+            final int latest = query.optInt("latest_query_data_id", -1);
+            if( latest >= 0 ) return resultsByQueryDataId(latest);
+        }
         final StringBuffer response = getRedashHttp().get("/api/queries/%d/results", queryId);
         final JSONObject jo = new JSONObject(response.toString());
         //System.out.println( jo.toString(2) );
@@ -62,80 +138,360 @@ public class RedashExecuteQueryCommand implements Cloneable {
     }
 
     public JSONObject resultsByQueryDataId(int result_id) throws SQLException {
+        JSONObject jo = this.cacheControl.getResult(result_id);
+        if( jo != null ) {
+            RedashDriver.log.info( "USING CACHED RESULT " + result_id );
+            return jo;
+        }
         final StringBuffer response = getRedashHttp().get("/api/query_results/%d", result_id);
-        final JSONObject jo = new JSONObject(response.toString());
+        jo = new JSONObject(response.toString());
+        this.cacheControl.putResult(result_id, jo);
         return jo;
     }
 
+    public RedashResultStream streamResultsByQueryDataId(int result_id) throws SQLException {
+        final InputStream is = getRedashHttp().stream("/api/query_results/%d", result_id);
+        try {
+            return new RedashResultStream(is);
+        } catch (IOException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    /**
+     * Stops the running execution at once, its job is canceled on Redash. The executions of this command and of its
+     * clones throw SQLException until reset().
+     */
     public void cancel() {
         this.cancelExecution = true;
+        for(CompletableFuture<?> future : this.waiting) future.cancel(false);
+    }
+
+    /**
+     * Forgets the cancel() of the previous execution, the statement calls it when it is executed again.
+     */
+    public void reset() {
+        this.cancelExecution = false;
+    }
+
+    private boolean isCanceled() {
+        return this.cancelExecution || (this.parent != null && this.parent.isCanceled());
+    }
+
+    private SQLException canceled() {
+        return new SQLException( RedashResource.getString("queryCanceled") );
+    }
+
+    /**
+     * The executions wait at most seconds for their job (0 for no limit) and then throw SQLTimeoutException.
+     */
+    public void setQueryTimeout(int seconds) {
+        this.queryTimeout = seconds;
+    }
+
+    public int getQueryTimeout() {
+        return this.queryTimeout;
     }
 
     public JSONObject executeQuery(String sql) throws SQLException {
-        int result_id = this.cacheControl.checkAndGetCachedResult(sql);
-        if( result_id < 0 ) {
-            JSONObject jo = getQueryCommand().updateQuery(sql);
+        final JSONObject cached = this.cacheControl.checkAndGetCachedPayload(con.getCatalog(), sql);
+        if( cached != null ) {
+            RedashDriver.log.info( "USING CACHED RESULT !!!!!!!!!!" );
+            revalidate(sql);
+            this.last_result_id = cached.getJSONObject("query_result").optInt("id", -1);
+            return cached;
+        }
+        final Executed executed = run(sql);
+        final JSONObject jo = executed.payload != null ? executed.payload : resultsByQueryDataId(executed.result_id);
+        this.cacheControl.addPayload(con.getCatalog(), sql, jo);
+        return jo;
+    }
+
+    /**
+     * The result of sql when the cache has it with its payload, without any request to Redash.
+     */
+    public JSONObject cachedResult(String sql) throws SQLException {
+        return this.cacheControl.checkAndGetCachedPayload(con.getCatalog(), sql);
+    }
+
+    /**
+     * Runs sql (or takes it from the cache) and returns its query_result_id.
+     * When the same query is already running (by another statement, or connection sharing the cache) its job is awaited
+     * instead of submitting another one.
+     * @throws SQLTimeoutException when the query timeout passes first, or without one when the job runs longer than
+     * RedashJobPoller.MAX_POLLS
+     * @throws SQLException when canceled, see cancel()
+     */
+    public int execute(String sql) throws SQLException {
+        return run(sql).result_id;
+    }
+
+    /**
+     * Runs sql like execute(), returns its result when Redash answered the submit with it, otherwise null: the result is
+     * then read by getLastResultId().
+     */
+    public JSONObject executeForResult(String sql) throws SQLException {
+        return run(sql).payload;
+    }
+
+    /**
+     * See execute(), with the result when Redash answered the submit with it.
+     */
+    private Executed run(String sql) throws SQLException {
+        if( isCanceled() ) throw canceled();
+        this.deadline = this.queryTimeout > 0 ? System.currentTimeMillis() + this.queryTimeout * 1000L : 0;
+        final String catalog = con.getCatalog();
+        int result_id = this.cacheControl.checkAndGetCachedResult(catalog, sql);
+        if( result_id >= 0 ) {
+            RedashDriver.log.info( "USING CACHED QUERY !!!!!!!!!!" );
+            revalidate(sql);
+            this.last_result_id = result_id;
+            return new Executed(result_id, null);
+        }
+        JSONObject payload = null;
+        while( result_id < 0 ) {
+            // a cancel() while no job was awaited
+            if( isCanceled() ) throw canceled();
+            final CompletableFuture<Integer> flight = new CompletableFuture<Integer>();
+            final CompletableFuture<Integer> running = this.cacheControl.joinFlight(catalog, sql, flight);
+            if( running != null ) {
+                RedashDriver.log.info( "WAITING FOR THE SAME QUERY !!!!!!!!!!" );
+                try {
+                    result_id = await( RedashThreads.follow(running) );
+                } catch (CancellationException e) {
+                    throw canceled();
+                }
+                // the other one was canceled or timed out: this one runs the query itself
+                continue;
+            }
+            try {
+                // it may have landed between the cache check and the join
+                result_id = this.cacheControl.checkAndGetCachedResult(catalog, sql);
+                if( result_id < 0 ) {
+                    final long start = System.currentTimeMillis();
+                    final Executed executed = runJob(sql, maxAge(sql));
+                    result_id = executed.result_id;
+                    payload = executed.payload;
+                    if( result_id >= 0 ) this.cacheControl.add(catalog, sql, result_id, System.currentTimeMillis() - start, this.refresher);
+                }
+                flight.complete(result_id);
+            } catch (SQLException | RuntimeException e) {
+                if( e instanceof SQLTimeoutException || isCanceled() ) {
+                    // the waiters have their own timeouts and cancels: they run the query themselves
+                    flight.complete(-1);
+                } else {
+                    flight.completeExceptionally(e);
+                }
+                throw e;
+            } finally {
+                this.cacheControl.land(catalog, sql, flight);
+            }
+        }
+        this.last_result_id = result_id;
+        return new Executed(result_id, payload);
+    }
+
+    /**
+     * When the cached entry of sql is stale it is run again in the background, the callers keep getting it meanwhile.
+     */
+    private void revalidate(final String sql) throws SQLException {
+        final String catalog = con.getCatalog();
+        if( !this.cacheControl.startRevalidation(catalog, sql) ) return;
+        final RedashExecuteQueryCommand command = new RedashExecuteQueryCommand(con);
+        RedashThreads.background().execute( new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    command.refresh(catalog, sql);
+                } catch (Exception e) {
+                    RedashDriver.log.log(Level.WARNING, e.getMessage(), e);
+                } finally {
+                    cacheControl.endRevalidation(catalog, sql);
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs sql again and replaces its cache entry (and payload), unless it is already running or the catalog changed.
+     * Used by the stale while revalidate and the refresh ahead of the cache.
+     */
+    private void refresh(String catalog, String sql) throws SQLException {
+        if( !catalog.equals(con.getCatalog()) ) return;
+        final CompletableFuture<Integer> flight = new CompletableFuture<Integer>();
+        if( this.cacheControl.joinFlight(catalog, sql, flight) != null ) return;
+        try {
+            final long start = System.currentTimeMillis();
+            final Executed executed = runJob(sql, 0);
+            final int result_id = executed.result_id;
+            if( result_id >= 0 ) {
+                this.cacheControl.add(catalog, sql, result_id, System.currentTimeMillis() - start, this.refresher);
+                if( this.cacheControl.keepsPayloads() ) {
+                    this.cacheControl.addPayload(catalog, sql, executed.payload != null ? executed.payload : resultsByQueryDataId(result_id));
+                }
+            }
+            flight.complete(result_id);
+        } catch (SQLException | RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            this.cacheControl.land(catalog, sql, flight);
+        }
+    }
+
+    /**
+     * Seconds of the max_age hint of sql, otherwise of the connection.
+     */
+    private int maxAge(String sql) {
+        final Matcher m = MAX_AGE_HINT.matcher(sql);
+        return m.lookingAt() ? Integer.parseInt(m.group(1)) : con.getMaxAge();
+    }
+
+    /**
+     * Submits sql ad hoc when the connection does, otherwise with a query of the connection (see RedashQueryPool).
+     * Returns the response with the job, or with the query_result when Redash has one up to maxAge seconds old.
+     */
+    private JSONObject submit(String sql, int maxAge) throws SQLException {
+        if( con.isAdhocExecution() ) {
+            try {
+                return submitAdhoc(sql, maxAge);
+            } catch (SQLException e) {
+                // 403, 404, 405: the server doesn't allow it, the connection goes on with its queries (a 400 or 429 is
+                // about this request, not the mode)
+                if( e.getErrorCode() != 403 && e.getErrorCode() != 404 && e.getErrorCode() != 405 ) throw e;
+                RedashDriver.log.log(Level.WARNING, "Ad hoc execution not allowed, using the query of the connection: " + e.getMessage());
+                con.disableAdhocExecution();
+            }
+        }
+        return submitQuery(sql, maxAge);
+    }
+
+    /**
+     * POST /api/query_results: one request, no query is updated.
+     */
+    private JSONObject submitAdhoc(String sql, int maxAge) throws SQLException {
+        // {"query":"SELECT 1","data_source_id":432,"parameters":{},"apply_auto_limit":true,"max_age":0}
+        final JSONObject postData = new JSONObject();
+        postData.put("query", sql);
+        postData.put("data_source_id", con.getDsId());
+        postData.put("parameters", new JSONObject());
+        postData.put("apply_auto_limit", true);
+        postData.put("max_age", maxAge);
+        if(isTraced()) Logger.getLogger("redash.jdbc").log(Level.INFO, postData.toString());
+        final StringBuffer response = getRedashHttp().post("/api/query_results", postData.toString());
+        return new JSONObject(response.toString());
+    }
+
+    private JSONObject submitQuery(String sql, int maxAge) throws SQLException {
+        final StringBuffer response;
+        // the job runs the text of the query when it is submitted, then the query can take the next one
+        final RedashQueryCommand query = this.queryPool.lease();
+        try {
+            query.updateQuery(sql);
     
             // {"id":22,"parameters":{},"apply_auto_limit":false,"max_age":0}
             // /api/queries/22/results
     
             final JSONObject postData = new JSONObject();
-            postData.put("id", getQueryId());
+            postData.put("id", query.getQueryId());
             postData.put("parameters", new JSONObject());
             postData.put("apply_auto_limit", true);
-            postData.put("max_age", 0);
+            postData.put("max_age", maxAge);
             if(isTraced()) Logger.getLogger("redash.jdbc").log(Level.INFO, postData.toString());
-            StringBuffer response = getRedashHttp().post("/api/queries/%d/results", postData.toString(), getQueryId());
-            //System.out.println( response.toString());
-            jo = new JSONObject(response.toString());
-            if ( jo.getJSONObject("job").get("status").toString().equalsIgnoreCase("FAILURE") || jo.getJSONObject("job").get("status").toString().equals("4") ) {
-                throw new SQLException(jo.getJSONObject("job").getString("error"));
-            }
-            String jobId = jo.getJSONObject("job").getString("id");
-            int c = 0;
-            while (true) {
-                try {
-                    this.cacheControl.cleanOlderCache();
-                    Thread.sleep((c < 5 ? 1000 : (c < 10 ? 2000 : (c < 15 ? 3000 : 4000))));
-                } catch (InterruptedException e) {
-                    throw new SQLException(e);
-                }
-                if (this.cancelExecution || c > 100 ) {
-                    this.cancelExecution = false;
-                    return null;
-                }
-                response = getRedashHttp().get("/api/jobs/%s", jobId);
-                if(isTraced()) Logger.getLogger("redash.jdbc").log(Level.INFO, "RESPONSE: " + response);
-                jo = new JSONObject(response.toString());
-                if( jo.has("job") ) {
-                    //if (jo.getJSONObject("job").getInt("status") == 3)
-                    if( jo.getJSONObject("job").get("status").toString().equalsIgnoreCase("finished") || jo.getJSONObject("job").get("status").toString().equalsIgnoreCase("SUCCESS") || jo.getJSONObject("job").get("status").toString().equals("3") ) {
-                        if( jo.getJSONObject("job").has("query_result_id") ) {
-                            result_id = jo.getJSONObject("job").getInt("query_result_id");
-                        } else {
-                            result_id = jo.getJSONObject("job").getInt("result_id");
-                        }
-                        break;
-                    }
-                    //if (jo.getJSONObject("job").getInt("status") == 4) {
-                    if( jo.getJSONObject("job").get("status").toString().equalsIgnoreCase("FAILURE") || jo.getJSONObject("job").get("status").toString().equalsIgnoreCase("failed") || jo.getJSONObject("job").get("status").toString().equals("4") ) {
-                        throw new RedashException(jo.getJSONObject("job"));
-                    }
-                } else {
-                    throw new RedashException(jo);
-                }
-                c++;
+            response = getRedashHttp().post("/api/queries/%d/results", postData.toString(), query.getQueryId());
+        } finally {
+            this.queryPool.release(query);
+        }
+        //System.out.println( response.toString());
+        return new JSONObject(response.toString());
+    }
+
+    /**
+     * Submits sql (see submit) and waits for its job (see RedashJobPoller), returns the query_result_id (and the result
+     * when Redash answered the submit with it).
+     * With a query timeout the job is polled until it passes, otherwise up to RedashJobPoller.MAX_POLLS times.
+     * @param maxAge seconds old a result of Redash can be, 0 runs sql
+     */
+    private Executed runJob(String sql, int maxAge) throws SQLException {
+        final JSONObject jo = submit(sql, maxAge);
+        if( jo.has("query_result") ) {
+            final int result_id = jo.getJSONObject("query_result").getInt("id");
+            this.cacheControl.putResult(result_id, jo);
+            return new Executed(result_id, jo);
+        }
+        if ( jo.getJSONObject("job").get("status").toString().equalsIgnoreCase("FAILURE") || jo.getJSONObject("job").get("status").toString().equals("4") ) {
+            throw new SQLException(jo.getJSONObject("job").getString("error"));
+        }
+        final String jobId = jo.getJSONObject("job").getString("id");
+        final String catalog = con.getCatalog();
+        final long expected = this.cacheControl.expectedRuntime(catalog, sql);
+        final CompletableFuture<RedashJobPoller.Finished> finished = RedashJobPoller.shared().submit(getRedashHttp().copy(), jobId, isTraced(), con.getPollPolicy(), expected,
+                this.deadline > 0 ? 0 : RedashJobPoller.MAX_POLLS);
+        final RedashJobPoller.Finished done;
+        boolean awaited = false;
+        try {
+            done = await(finished);
+            awaited = true;
+        } catch (CancellationException e) {
+            throw canceled();
+        } finally {
+            if( !awaited ) {
+                // canceled, timed out, interrupted or failed polling: nobody will read its result
+                finished.cancel(false);
+                cancelJob(jobId);
             }
-            //this.latest_query_data_id = jo.getJSONObject("job").get("query_result_id");
-            //return results(getQueryId());
-            this.cacheControl.add(sql, result_id);
+        }
+        if( done == null ) {
+            // nobody will read its result
+            cancelJob(jobId);
+            throw new SQLTimeoutException( String.format(RedashResource.getString("jobStillRunning"), jobId, RedashJobPoller.MAX_POLLS) );
+        }
+        this.cacheControl.learnRuntime(catalog, sql, done.runtime);
+        final JSONObject job = done.job;
+        final int result_id;
+        if( job.has("query_result_id") ) {
+            result_id = job.getInt("query_result_id");
         } else {
-            RedashDriver.log.info( "USING CACHED QUERY !!!!!!!!!!" );
+            result_id = job.getInt("result_id");
         }
-        this.last_result_id = result_id;
-        return resultsByQueryDataId(result_id);
+        return new Executed(result_id, null);
     }
     
+    /**
+     * Waits for future until the deadline of the execution, cancel() of this command (or of the one it was cloned from)
+     * ends the wait at once.
+     * @throws CancellationException when canceled
+     */
+    private <T> T await(CompletableFuture<T> future) throws SQLException {
+        for(RedashExecuteQueryCommand command = this; command != null; command = command.parent) command.waiting.add(future);
+        try {
+            if( isCanceled() ) future.cancel(false);
+            if( this.deadline <= 0 ) return RedashThreads.get(future);
+            try {
+                return RedashThreads.get(future, Math.max(0, this.deadline - System.currentTimeMillis()));
+            } catch (TimeoutException e) {
+                throw new SQLTimeoutException( String.format(RedashResource.getString("queryTimeout"), this.queryTimeout) );
+            }
+        } finally {
+            for(RedashExecuteQueryCommand command = this; command != null; command = command.parent) command.waiting.remove(future);
+        }
+    }
+
+    /**
+     * Asks Redash to stop the job jobId, freeing its worker (best effort).
+     */
+    private void cancelJob(String jobId) {
+        // sent also when the wait was interrupted, the interrupt is kept for the caller
+        final boolean interrupted = Thread.interrupted();
+        try {
+            getRedashHttp().delete("/api/jobs/%s", jobId);
+        } catch (SQLException e) {
+            RedashDriver.log.log(Level.WARNING, e.getMessage(), e);
+        } finally {
+            if( interrupted ) Thread.currentThread().interrupt();
+        }
+    }
+
     public int getLastResultId() {
         return last_result_id;
     }
@@ -79,7 +79,10 @@ public class RedashQueryCommand implements Cloneable {
     }
     
     public void identifyOrCreateQueryId() throws SQLException {
-        final String queryName = con.getQueryName();
+        identifyOrCreateQueryId( con.getQueryName() );
+    }
+
+    public void identifyOrCreateQueryId(String queryName) throws SQLException {
         final int userId = ((RedashDatabaseMetaData) con.getMetaData()).getUserId();
         for (Object obj : this.getRows(true)) {
             JSONObject jo = (JSONObject) obj;
@@ -160,6 +163,7 @@ public class RedashQueryCommand implements Cloneable {
         final StringBuffer response = con.getRedashHttp().post( "/api/queries/%d", postData.toString(), getQueryId() );
         final JSONObject jo = new JSONObject(response.toString());
         this.latest_query_data_id = jo.get("latest_query_data_id");
+        this.queryVersion = jo.optLong("version", this.queryVersion);
         return jo;
     }
 
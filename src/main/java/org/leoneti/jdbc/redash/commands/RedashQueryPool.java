@@ -0,0 +1,75 @@
+/*****************************************************************************************
+* Copyright (C) 2023-2026  Ricardo Leoneti                           Date: 2026-10-18
+*
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v2.0
+* which accompanies this distribution, and is available at
+* https://www.eclipse.org/org/documents/epl-2.0/EPL-2.0.html
+*
+*****************************************************************************************/
+package org.leoneti.jdbc.redash.commands;
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Semaphore;
+
+import org.leoneti.jdbc.redash.RedashConnection;
+
+/**
+ * The Redash queries a connection runs its statements with: queryName and, up to size, queryName-2 .. queryName-N
+ * (found or created when first needed). A statement leases one to update its text and submit it, the statements of the
+ * connection don't wait for each other unless all of them are leased.
+ */
+public class RedashQueryPool {
+
+    private final RedashConnection con;
+    private final Semaphore available;
+    private final Deque<RedashQueryCommand> idle = new ArrayDeque<RedashQueryCommand>();
+    private int created;
+
+    /**
+     * @param first the query queryName, the first of the pool
+     */
+    public RedashQueryPool(RedashConnection con, RedashQueryCommand first, int size) {
+        this.con = con;
+        this.available = new Semaphore(Math.max(1, size), true);
+        this.idle.push(first);
+        this.created = 1;
+    }
+
+    /**
+     * Waits for a query of the pool, it must be released.
+     */
+    public RedashQueryCommand lease() throws SQLException {
+        try {
+            this.available.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(e);
+        }
+        final int number;
+        synchronized( this.idle ) {
+            if( !this.idle.isEmpty() ) return this.idle.pop();
+            number = ++this.created;
+        }
+        try {
+            final RedashQueryCommand query = new RedashQueryCommand(this.con);
+            query.identifyOrCreateQueryId( String.format("%s-%d", this.con.getQueryName(), number) );
+            return query;
+        } catch (SQLException | RuntimeException e) {
+            synchronized( this.idle ) {
+                this.created--;
+            }
+            this.available.release();
+            throw e;
+        }
+    }
+
+    public void release(RedashQueryCommand query) {
+        synchronized( this.idle ) {
+            this.idle.push(query);
+        }
+        this.available.release();
+    }
+}
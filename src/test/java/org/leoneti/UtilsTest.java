@@ -0,0 +1,38 @@
+/*****************************************************************************************
+* Copyright (C) 2023-2026  Ricardo Leoneti                           Date: 2026-10-18
+*
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v2.0
+* which accompanies this distribution, and is available at
+* https://www.eclipse.org/org/documents/epl-2.0/EPL-2.0.html
+*
+*****************************************************************************************/
+package org.leoneti;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class UtilsTest extends TestCase {
+
+    /**
+     * MurmurHash3 x64 128 with seed 0 (the vectors of Guava's Murmur3_128HashFunctionTest), h1 then h2.
+     */
+    public void testHash128() {
+        assertEquals( "00000000000000000000000000000000", Utils.hash128("") );
+        assertEquals( "629942693e10f86792db0b82baeb5347", Utils.hash128("hell") );
+        assertEquals( "e34bbc7bbc071b6c7a433ca9c49a9347", Utils.hash128("The quick brown fox jumps over the lazy dog") );
+        assertEquals( "658ca970ff85269a43fee3eaa68e5c3e", Utils.hash128("The quick brown fox jumps over the lazy cog") );
+    }
+
+    public void testHash128Tails() {
+        // every tail length of the 16 bytes blocks gives a different hash
+        final StringBuilder sb = new StringBuilder();
+        final Set<String> hashes = new HashSet<String>();
+        for(int i=0; i < 40; i++) {
+            assertTrue( hashes.add( Utils.hash128( sb.toString() ) ) );
+            sb.append( (char) ('a' + i % 26) );
+        }
+    }
+}
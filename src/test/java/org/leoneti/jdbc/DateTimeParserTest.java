@@ -0,0 +1,88 @@
+/*****************************************************************************************
+* Copyright (C) 2023-2026  Ricardo Leoneti                           Date: 2026-10-18
+*
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v2.0
+* which accompanies this distribution, and is available at
+* https://www.eclipse.org/org/documents/epl-2.0/EPL-2.0.html
+*
+*****************************************************************************************/
+package org.leoneti.jdbc;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+
+import junit.framework.TestCase;
+
+public class DateTimeParserTest extends TestCase {
+
+    public void testDate() {
+        assertEquals( Date.valueOf("2023-01-02"), DateTimeParser.parse("2023-01-02") );
+        assertEquals( Date.valueOf("2023-01-02"), DateTimeParser.parse("  2023-01-02 ") );
+    }
+
+    public void testTime() {
+        assertEquals( Time.valueOf("12:34:56"), DateTimeParser.parse("12:34:56") );
+        final Time time = (Time) DateTimeParser.parse("12:34:56.789");
+        assertEquals( 789, time.getTime() - Time.valueOf("12:34:56").getTime() );
+    }
+
+    public void testLocalTimestamp() {
+        assertEquals( Timestamp.valueOf("2023-01-02 03:04:05"), DateTimeParser.parse("2023-01-02T03:04:05") );
+        assertEquals( Timestamp.valueOf("2023-01-02 03:04:05"), DateTimeParser.parse("2023-01-02 03:04:05") );
+        assertEquals( Timestamp.valueOf("2023-01-02 03:04:05.000001"), DateTimeParser.parse("2023-01-02T03:04:05.000001") );
+        assertEquals( Timestamp.valueOf("2023-01-02 03:04:05.123456789"), DateTimeParser.parse("2023-01-02T03:04:05.123456789") );
+        // digits after the nanoseconds are dropped
+        assertEquals( Timestamp.valueOf("2023-01-02 03:04:05.123456789"), DateTimeParser.parse("2023-01-02T03:04:05.1234567891") );
+        assertEquals( Timestamp.valueOf("2023-01-02 03:04:05.5"), DateTimeParser.parse("2023-01-02T03:04:05,5") );
+    }
+
+    public void testOffsetTimestamp() {
+        final Timestamp utc = Timestamp.from( Instant.parse("2023-01-02T01:04:05Z") );
+        assertEquals( utc, DateTimeParser.parse("2023-01-02T01:04:05Z") );
+        assertEquals( utc, DateTimeParser.parse("2023-01-02T03:04:05+02:00") );
+        assertEquals( utc, DateTimeParser.parse("2023-01-02T03:04:05+0200") );
+        assertEquals( utc, DateTimeParser.parse("2023-01-02T03:04:05+02") );
+        assertEquals( utc, DateTimeParser.parse("2023-01-01T23:04:05-02:00") );
+        assertEquals( utc, DateTimeParser.parse("2023-01-02T03:04:05+02:00  ") );
+        assertEquals( Timestamp.from( Instant.parse("2023-01-02T01:04:05.250Z") ), DateTimeParser.parse("2023-01-02 01:04:05.25 +00:00") );
+    }
+
+    public void testNotDateTime() {
+        assertNull( DateTimeParser.parse(null) );
+        assertNull( DateTimeParser.parse("") );
+        assertNull( DateTimeParser.parse("n/a") );
+        assertNull( DateTimeParser.parse("12345") );
+        assertNull( DateTimeParser.parse("2023-13-01") );
+        assertNull( DateTimeParser.parse("2023-02-30") );
+        assertNull( DateTimeParser.parse("2023-01-02T03:04") );
+        assertNull( DateTimeParser.parse("2023-01-02T03:04:05.") );
+        assertNull( DateTimeParser.parse("2023-01-02T03:04:05 PM") );
+        assertNull( DateTimeParser.parse("2023-01-02X03:04:05") );
+        // the fields end with the text, not with its trailing spaces
+        assertNull( DateTimeParser.parse("2023-01-02T03:04:05+0 ") );
+        assertNull( DateTimeParser.parse("2023-01-02T03:04:05+02:3  ") );
+        assertNull( DateTimeParser.parse("2023-01-02T03:04:0 ") );
+    }
+
+    public void testParseAs() throws SQLException {
+        assertEquals( Timestamp.valueOf("2023-01-02 00:00:00"), DateTimeParser.parseTimestamp("2023-01-02") );
+        assertEquals( Date.valueOf("2023-01-02").toString(), DateTimeParser.parseDate("2023-01-02T03:04:05").toString() );
+        assertEquals( Time.valueOf("03:04:05").toString(), DateTimeParser.parseTime("2023-01-02T03:04:05").toString() );
+        try {
+            DateTimeParser.parseDate("12:34:56");
+            fail("a time isn't a date");
+        } catch (SQLException e) {
+            // expected
+        }
+        try {
+            DateTimeParser.parseTimestamp("abc");
+            fail("abc isn't a timestamp");
+        } catch (SQLException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*****************************************************************************************
+* Copyright (C) 2023-2026  Ricardo Leoneti                           Date: 2026-10-18
+*
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v2.0
+* which accompanies this distribution, and is available at
+* https://www.eclipse.org/org/documents/epl-2.0/EPL-2.0.html
+*
+*****************************************************************************************/
+package org.leoneti.jdbc;
+
+import junit.framework.TestCase;
+
+public class SqlNormalizerTest extends TestCase {
+
+    public void testSpacesAndSemicolons() {
+        assertNull( SqlNormalizer.normalize(null, false) );
+        assertEquals( "select a, b from t", SqlNormalizer.normalize("  select\ta,\n  b\r\nfrom   t ;; ", false) );
+        assertEquals( SqlNormalizer.normalize("SELECT 1", true), SqlNormalizer.normalize("select\n1;", true) );
+        assertFalse( SqlNormalizer.normalize("SELECT 1", false).equals( SqlNormalizer.normalize("select 1", false) ) );
+    }
+
+    public void testComments() {
+        assertEquals( "SELECT 1 FROM t WHERE a=1", SqlNormalizer.normalize("SELECT 1 -- one\nFROM t /* the\ntable */ WHERE a=1", false) );
+        assertEquals( "SELECT 1", SqlNormalizer.normalize("SELECT 1 -- unterminated", false) );
+        assertEquals( "SELECT 1", SqlNormalizer.normalize("SELECT 1 /* unterminated", false) );
+        assertEquals( "SELECT a-b/c", SqlNormalizer.normalize("SELECT a-b/c", false) );
+    }
+
+    public void testMySqlExecutableComment() {
+        // /*! ... */ is run by MySQL: it stays, its spaces are normalized
+        assertEquals( "SELECT /*! STRAIGHT_JOIN */ A FROM T", SqlNormalizer.normalize("select /*!  straight_join */ a from t", true) );
+    }
+
+    public void testQuotes() {
+        assertEquals( "SELECT 'a  -- b' FROM T", SqlNormalizer.normalize("select 'a  -- b' from t", true) );
+        assertEquals( "SELECT 'it''s  /* x */' FROM T", SqlNormalizer.normalize("select 'it''s  /* x */' from t", true) );
+        assertEquals( "SELECT \"Mixed  Case\", `back  tick` FROM T", SqlNormalizer.normalize("select \"Mixed  Case\", `back  tick` from t", true) );
+    }
+
+    public void testDollarQuotes() {
+        assertEquals( "SELECT $fn$ a  /* kept */ b $fn$ FROM T", SqlNormalizer.normalize("select $fn$ a  /* kept */ b $fn$ from t", true) );
+        assertEquals( "SELECT $$ x  y $$", SqlNormalizer.normalize("select $$ x  y $$", true) );
+        // not dollar quoted strings: parameters and names with $
+        assertEquals( "SELECT $1 FROM V$SESSION WHERE A = $2", SqlNormalizer.normalize("select $1  from v$session where a = $2", true) );
+    }
+
+    public void testNoCollisions() {
+        // the \' doesn't end the literal: the -- in it is not a comment
+        assertEquals( "SELECT 'it\\'s -- x'", SqlNormalizer.normalize("SELECT 'it\\'s -- x'", false) );
+        assertFalse( SqlNormalizer.normalize("SELECT 'it\\'s -- x'", false).equals( SqlNormalizer.normalize("SELECT 'it\\'s -- y'", false) ) );
+        assertFalse( SqlNormalizer.normalize("SELECT \"a\\\" -- x\"", false).equals( SqlNormalizer.normalize("SELECT \"a\\\" -- y\"", false) ) );
+        // a literal ending in \ (standard SQL) keeps the rest as it is
+        assertEquals( "SELECT 'a\\' -- x\nFROM t", SqlNormalizer.normalize("SELECT 'a\\' -- x\nFROM t", false) );
+        // -- with no white space after it is 1 - -1 in MySQL
+        assertEquals( "SELECT 1--1", SqlNormalizer.normalize("SELECT 1--1", false) );
+        assertFalse( SqlNormalizer.normalize("SELECT 1--1", false).equals( SqlNormalizer.normalize("SELECT 1", false) ) );
+        assertEquals( "SELECT 1", SqlNormalizer.normalize("SELECT 1 --", false) );
+        assertEquals( "SELECT 1", SqlNormalizer.normalize("SELECT 1 --\tone", false) );
+    }
+}
@@ -0,0 +1,158 @@
+/*****************************************************************************************
+* Copyright (C) 2023-2026  Ricardo Leoneti                           Date: 2026-10-18
+*
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v2.0
+* which accompanies this distribution, and is available at
+* https://www.eclipse.org/org/documents/epl-2.0/EPL-2.0.html
+*
+*****************************************************************************************/
+package org.leoneti.jdbc.redash;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+import junit.framework.TestCase;
+
+public class RedashCacheControlTest extends TestCase {
+
+    private RedashCacheControl cache;
+
+    @Override
+    protected void tearDown() {
+        if( this.cache != null ) this.cache.close();
+    }
+
+    public void testNormalizedKey() {
+        this.cache = new RedashCacheControl("test", 60);
+        this.cache.add("db", "SELECT 1", 5);
+        assertEquals( 5, this.cache.checkAndGetCachedResult("db", "SELECT   1 -- one\n;") );
+        assertEquals( -1, this.cache.checkAndGetCachedResult("db", "select 1") );
+        assertEquals( -1, this.cache.checkAndGetCachedResult("other", "SELECT 1") );
+        this.cache.setIgnoreCase(true);
+        this.cache.add("db", "SELECT 1", 6);
+        assertEquals( 6, this.cache.checkAndGetCachedResult("db", "select 1") );
+    }
+
+    public void testTtl() throws InterruptedException {
+        this.cache = new RedashCacheControl("test", 1);
+        this.cache.setRuntimeTtl(10, 3600);
+        this.cache.setTtl("long", 60);
+        this.cache.add("db", "SELECT 1", 1, 10, null);
+        // 10 times its runtime: 10 seconds
+        this.cache.add("db", "SELECT 2", 2, 1000, null);
+        this.cache.add("long", "SELECT 1", 3, 10, null);
+        assertEquals( 1, this.cache.checkAndGetCachedResult("db", "SELECT 1") );
+        Thread.sleep(1100);
+        assertEquals( -1, this.cache.checkAndGetCachedResult("db", "SELECT 1") );
+        assertEquals( 2, this.cache.checkAndGetCachedResult("db", "SELECT 2") );
+        assertEquals( 3, this.cache.checkAndGetCachedResult("long", "SELECT 1") );
+        this.cache.cleanOlderCache();
+        assertEquals( 2, this.cache.size() );
+    }
+
+    public void testStaleWhileRevalidate() throws InterruptedException {
+        this.cache = new RedashCacheControl("test", 1);
+        this.cache.setStaleWhileRevalidate(60);
+        this.cache.add("db", "SELECT 1", 1);
+        assertFalse( this.cache.startRevalidation("db", "SELECT 1") );
+        Thread.sleep(1100);
+        assertEquals( 1, this.cache.checkAndGetCachedResult("db", "SELECT 1") );
+        assertTrue( this.cache.startRevalidation("db", "SELECT 1") );
+        // only one caller refreshes it
+        assertFalse( this.cache.startRevalidation("db", "SELECT 1") );
+        // that one failed: the next caller retries
+        this.cache.endRevalidation("db", "SELECT 1");
+        assertTrue( this.cache.startRevalidation("db", "SELECT 1") );
+        this.cache.add("db", "SELECT 1", 2);
+        assertEquals( 2, this.cache.checkAndGetCachedResult("db", "SELECT 1") );
+        assertFalse( this.cache.startRevalidation("db", "SELECT 1") );
+    }
+
+    public void testLeastRecentlyUsedEvicted() {
+        this.cache = new RedashCacheControl("test", 60, 2, 0);
+        this.cache.add("db", "SELECT 1", 1);
+        this.cache.add("db", "SELECT 2", 2);
+        assertEquals( 1, this.cache.checkAndGetCachedResult("db", "SELECT 1") );
+        this.cache.add("db", "SELECT 3", 3);
+        assertEquals( 2, this.cache.size() );
+        assertEquals( 1, this.cache.checkAndGetCachedResult("db", "SELECT 1") );
+        assertEquals( -1, this.cache.checkAndGetCachedResult("db", "SELECT 2") );
+        assertEquals( 3, this.cache.checkAndGetCachedResult("db", "SELECT 3") );
+    }
+
+    public void testCheapestEvicted() {
+        this.cache = new RedashCacheControl("test", 60, 2, 0);
+        this.cache.add("db", "SELECT 1", 1, 10, null);
+        this.cache.add("db", "SELECT 2", 2, 100, null);
+        this.cache.add("db", "SELECT 3", 3, 50, null);
+        assertEquals( 2, this.cache.size() );
+        assertEquals( -1, this.cache.checkAndGetCachedResult("db", "SELECT 1") );
+        assertEquals( 2, this.cache.checkAndGetCachedResult("db", "SELECT 2") );
+        assertEquals( 3, this.cache.checkAndGetCachedResult("db", "SELECT 3") );
+    }
+
+    public void testMinRuntime() {
+        this.cache = new RedashCacheControl("test", 60);
+        this.cache.setMinRuntime(100);
+        this.cache.add("db", "SELECT 1", 1, 50, null);
+        this.cache.add("db", "SELECT 2", 2, 150, null);
+        this.cache.add("db", "SELECT 3", 3);
+        assertEquals( -1, this.cache.checkAndGetCachedResult("db", "SELECT 1") );
+        assertEquals( 2, this.cache.checkAndGetCachedResult("db", "SELECT 2") );
+        assertEquals( 3, this.cache.checkAndGetCachedResult("db", "SELECT 3") );
+    }
+
+    public void testPayloadsEvictedByCostPerByte() throws IOException {
+        final int size = RedashPayloadCodec.encode( RedashPayloadCodecTest.payload(1, 10) ).length;
+        this.cache = new RedashCacheControl("test", 60, 10, size * 2 + size / 2);
+        for(int i=1; i <= 3; i++) {
+            // SELECT 2 is the cheapest to run again
+            this.cache.add("db", "SELECT " + i, i, i == 2 ? 10 : 100 * i, null);
+            this.cache.addPayload("db", "SELECT " + i, RedashPayloadCodecTest.payload(i, 10));
+        }
+        assertNotNull( this.cache.checkAndGetCachedPayload("db", "SELECT 1") );
+        assertNull( this.cache.checkAndGetCachedPayload("db", "SELECT 2") );
+        assertEquals( 2, this.cache.checkAndGetCachedResult("db", "SELECT 2") );
+        assertTrue( RedashPayloadCodecTest.payload(3, 10).similar( this.cache.checkAndGetCachedPayload("db", "SELECT 3") ) );
+    }
+
+    public void testFlights() {
+        this.cache = new RedashCacheControl("test", 60);
+        final CompletableFuture<Integer> first = new CompletableFuture<Integer>();
+        final CompletableFuture<Integer> second = new CompletableFuture<Integer>();
+        assertNull( this.cache.joinFlight("db", "SELECT 1", first) );
+        assertSame( first, this.cache.joinFlight("db", "SELECT  1", second) );
+        assertNull( this.cache.joinFlight("other", "SELECT 1", second) );
+        // only the registered flight lands
+        this.cache.land("db", "SELECT 1", second);
+        assertSame( first, this.cache.joinFlight("db", "SELECT 1", second) );
+        this.cache.land("db", "SELECT 1", first);
+        assertNull( this.cache.joinFlight("db", "SELECT 1", second) );
+    }
+
+    public void testExpectedRuntime() {
+        this.cache = new RedashCacheControl("test", 60);
+        assertEquals( -1, this.cache.expectedRuntime("db", "SELECT 1") );
+        this.cache.learnRuntime("db", "SELECT 1", 100);
+        assertEquals( 100, this.cache.expectedRuntime("db", "SELECT 1") );
+        this.cache.learnRuntime("db", "SELECT 1", 200);
+        assertEquals( 125, this.cache.expectedRuntime("db", "SELECT 1") );
+    }
+
+    public void testSharedCacheClosedByTheLastConnection() {
+        this.cache = new RedashCacheControl("test", 60);
+        assertNull( RedashDriver.acquireSharedCache("shared-test") );
+        assertSame( this.cache, RedashDriver.shareCache("shared-test", this.cache) );
+        // a second connection racing to share its own gets the first one
+        assertSame( this.cache, RedashDriver.shareCache("shared-test", new RedashCacheControl("test", 60)) );
+        this.cache.add("db", "SELECT 1", 5);
+        RedashDriver.releaseSharedCache("shared-test");
+        assertSame( this.cache, RedashDriver.acquireSharedCache("shared-test") );
+        RedashDriver.releaseSharedCache("shared-test");
+        assertEquals( 5, this.cache.checkAndGetCachedResult("db", "SELECT 1") );
+        RedashDriver.releaseSharedCache("shared-test");
+        assertEquals( 0, this.cache.size() );
+        assertNull( RedashDriver.acquireSharedCache("shared-test") );
+    }
+}
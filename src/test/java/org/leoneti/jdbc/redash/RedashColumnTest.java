@@ -0,0 +1,117 @@
+/*****************************************************************************************
+* Copyright (C) 2023-2026  Ricardo Leoneti                           Date: 2026-10-18
+*
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v2.0
+* which accompanies this distribution, and is available at
+* https://www.eclipse.org/org/documents/epl-2.0/EPL-2.0.html
+*
+*****************************************************************************************/
+package org.leoneti.jdbc.redash;
+
+import java.math.BigDecimal;
+import java.sql.JDBCType;
+import java.sql.SQLException;
+
+import org.json.JSONObject;
+
+import junit.framework.TestCase;
+
+public class RedashColumnTest extends TestCase {
+
+    public void testNullsAcrossWords() {
+        // capacity 1: the arrays and the null bitset grow past the 64 rows of a word
+        final RedashColumn col = RedashColumn.create(JDBCType.BIGINT, 1);
+        for(int row=0; row < 200; row++) {
+            assertTrue( col.add( row % 3 == 0 ? null : (row == 1 ? JSONObject.NULL : (Object) Long.valueOf(row)) ) );
+        }
+        assertEquals( 200, col.size() );
+        for(int row=0; row < 200; row++) {
+            assertEquals( "row " + row, row % 3 == 0 || row == 1, col.isNull(row) );
+            if( !col.isNull(row) ) assertEquals( (long) row, col.get(row) );
+        }
+    }
+
+    public void testClear() {
+        final RedashColumn col = RedashColumn.create(JDBCType.BOOLEAN, 4);
+        for(int row=0; row < 100; row++) col.add( row % 2 == 0 ? null : Boolean.TRUE );
+        col.clear();
+        assertEquals( 0, col.size() );
+        for(int row=0; row < 100; row++) col.add( Boolean.FALSE );
+        for(int row=0; row < 100; row++) {
+            assertFalse( col.isNull(row) );
+            assertEquals( Boolean.FALSE, col.get(row) );
+        }
+    }
+
+    public void testRejectedValueIsNotAdded() {
+        final RedashColumn col = RedashColumn.create(JDBCType.INTEGER, 2);
+        assertTrue( col.add(1) );
+        assertFalse( col.add("x") );
+        assertFalse( col.add(1.5) );
+        // codes written with leading zeros aren't numbers
+        assertFalse( col.add("00123") );
+        assertFalse( col.add( new BigDecimal("1e30") ) );
+        assertTrue( col.add(null) );
+        assertTrue( col.add("42") );
+        assertEquals( 3, col.size() );
+        assertTrue( col.isNull(1) );
+        assertEquals( 42L, col.get(2) );
+    }
+
+    public void testSmallIntRange() {
+        final RedashColumn col = RedashColumn.create(JDBCType.SMALLINT, 2);
+        assertTrue( col.add(Integer.MAX_VALUE) );
+        assertFalse( col.add(Integer.MAX_VALUE + 1L) );
+    }
+
+    public void testDoubleKeepsText() throws SQLException {
+        final RedashColumn col = RedashColumn.create(JDBCType.DOUBLE, 2);
+        final String[] values = { "1", "1.5", "1.50", "1E+20", "12345678.9", "0.001" };
+        for(String value : values) assertTrue( col.add( new BigDecimal(value) ) );
+        assertTrue( col.add("2.5") );
+        assertTrue( col.add(3.25) );
+        for(int row=0; row < values.length; row++) assertEquals( values[row], col.getString(row) );
+        assertEquals( "2.5", col.getString(values.length) );
+        assertEquals( "3.25", col.getString(values.length + 1) );
+        assertEquals( 1.5, col.getDouble(2), 0 );
+        assertFalse( col.add("abc") );
+    }
+
+    public void testBooleanOnlyExactText() {
+        final RedashColumn col = RedashColumn.create(JDBCType.BOOLEAN, 2);
+        assertTrue( col.add("true") );
+        assertTrue( col.add(Boolean.FALSE) );
+        assertFalse( col.add("yes") );
+        assertFalse( col.add(1) );
+        assertEquals( Boolean.TRUE, col.get(0) );
+        assertEquals( Boolean.FALSE, col.get(1) );
+    }
+
+    public void testInferredTemporal() {
+        final RedashColumn ts = RedashColumn.createInferred(JDBCType.TIMESTAMP, 2);
+        assertTrue( ts.add("2023-01-02T03:04:05") );
+        assertTrue( ts.add("2023-01-02") );
+        assertFalse( ts.add("n/a") );
+        assertFalse( ts.add("12:00:00") );
+        final RedashColumn date = RedashColumn.createInferred(JDBCType.DATE, 2);
+        assertTrue( date.add("2023-01-02") );
+        assertFalse( date.add("2023-01-02T03:04:05") );
+        final RedashColumn time = RedashColumn.createInferred(JDBCType.TIME, 2);
+        assertTrue( time.add("03:04:05") );
+        assertFalse( time.add(5) );
+        // declared by Redash: kept as sent
+        assertTrue( RedashColumn.create(JDBCType.TIMESTAMP, 2).add("n/a") );
+    }
+
+    public void testAsObjectColumn() {
+        final RedashColumn col = RedashColumn.create(JDBCType.DOUBLE, 2);
+        col.add( new BigDecimal("1.50") );
+        col.add(null);
+        final RedashColumn objects = col.asObjectColumn();
+        assertEquals( 2, objects.size() );
+        assertEquals( new BigDecimal("1.50"), objects.get(0) );
+        assertTrue( objects.isNull(1) );
+        assertTrue( objects.add("anything") );
+    }
+}
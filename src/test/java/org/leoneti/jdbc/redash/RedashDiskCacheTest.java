@@ -0,0 +1,85 @@
+/*****************************************************************************************
+* Copyright (C) 2023-2026  Ricardo Leoneti                           Date: 2026-10-18
+*
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v2.0
+* which accompanies this distribution, and is available at
+* https://www.eclipse.org/org/documents/epl-2.0/EPL-2.0.html
+*
+*****************************************************************************************/
+package org.leoneti.jdbc.redash;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import junit.framework.TestCase;
+
+public class RedashDiskCacheTest extends TestCase {
+
+    private File dir;
+
+    @Override
+    protected void setUp() throws IOException {
+        dir = Files.createTempDirectory("rdc").toFile();
+    }
+
+    @Override
+    protected void tearDown() {
+        delete(dir);
+    }
+
+    private static void delete(File file) {
+        final File[] files = file.listFiles();
+        if( files != null ) for(File f : files) delete(f);
+        file.delete();
+    }
+
+    private long listed() {
+        long total = 0;
+        for(File f : dir.listFiles()) total += f.length();
+        return total;
+    }
+
+    public void testSizeCounted() throws IOException {
+        final RedashDiskCache cache = new RedashDiskCache(dir, 1000);
+        final long expiration = System.currentTimeMillis() + 60000;
+        cache.write("a", 1, expiration, 1, new byte[100]);
+        cache.write("b", 1, expiration, 2, new byte[50]);
+        assertEquals(listed(), cache.size());
+        // replaced, not added
+        cache.write("a", 1, expiration, 3, new byte[10]);
+        assertEquals(listed(), cache.size());
+        assertEquals(3, cache.read("a").resultId);
+        // counted again from the directory
+        assertEquals(cache.size(), new RedashDiskCache(dir, 1000).size());
+    }
+
+    public void testTrimmed() throws IOException {
+        final RedashDiskCache cache = new RedashDiskCache(dir, 1000);
+        final long expiration = System.currentTimeMillis() + 60000;
+        for(int i = 0; i < 20; i++) {
+            cache.write("k" + i, 1, expiration, i, new byte[100]);
+            assertTrue(cache.size() <= 1000);
+            assertEquals(listed(), cache.size());
+        }
+        assertTrue(dir.listFiles().length < 20);
+    }
+
+    public void testExpiredDeleted() throws IOException {
+        final RedashDiskCache cache = new RedashDiskCache(dir, 1000);
+        cache.write("a", 1, System.currentTimeMillis() - 1, 1, new byte[100]);
+        assertNull(cache.read("a"));
+        assertEquals(0, cache.size());
+        assertEquals(0, dir.listFiles().length);
+    }
+
+    public void testTempFileDeletedOnFailure() throws IOException {
+        final RedashDiskCache cache = new RedashDiskCache(dir, 1000);
+        // a non empty directory where the file goes: the move fails
+        final File target = new File(dir, "a.rdc");
+        assertTrue(new File(target, "x").mkdirs());
+        cache.write("a", 1, System.currentTimeMillis() + 60000, 1, new byte[100]);
+        for(File f : dir.listFiles()) assertFalse(f.getName(), f.getName().endsWith(".tmp"));
+    }
+}
@@ -0,0 +1,43 @@
+/*****************************************************************************************
+* Copyright (C) 2023-2026  Ricardo Leoneti                           Date: 2026-10-18
+*
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v2.0
+* which accompanies this distribution, and is available at
+* https://www.eclipse.org/org/documents/epl-2.0/EPL-2.0.html
+*
+*****************************************************************************************/
+package org.leoneti.jdbc.redash;
+
+import java.sql.SQLException;
+
+import junit.framework.TestCase;
+
+public class RedashPaginatorResultSetTest extends TestCase {
+
+    public void testKeysetQuery() {
+        assertEquals( "SELECT * FROM ( SELECT * FROM t ) tmp_paginator WHERE id IS NOT NULL ORDER BY id ASC LIMIT 500",
+                RedashPaginatorResultSet.keysetQuery("pg", "SELECT * FROM t", "id", 500, null) );
+        assertEquals( "SELECT * FROM ( SELECT * FROM t ) tmp_paginator WHERE id > 1500 ORDER BY id ASC LIMIT 500",
+                RedashPaginatorResultSet.keysetQuery("mysql", "SELECT * FROM t", "id", 500, "1500") );
+        assertEquals( "SELECT * FROM ( SELECT * FROM t ) tmp_paginator WHERE name > 'O''Brien' ORDER BY name ASC FETCH NEXT 100 ROWS ONLY",
+                RedashPaginatorResultSet.keysetQuery("oracle", "SELECT * FROM t", "name", 100, "'O''Brien'") );
+    }
+
+    public void testTimestampText() throws SQLException {
+        assertEquals( "2023-01-02 03:04:05", RedashPaginatorResultSet.toTimestampText("ts", "2023-01-02T03:04:05") );
+        assertEquals( "2023-01-02 03:04:05.000499", RedashPaginatorResultSet.toTimestampText("ts", "2023-01-02T03:04:05.000499") );
+        // the offset is dropped, the wall time kept
+        assertEquals( "2023-01-02 03:04:05.123", RedashPaginatorResultSet.toTimestampText("ts", "2023-01-02T03:04:05.123+02:00") );
+        assertEquals( "2023-01-02 03:04:05", RedashPaginatorResultSet.toTimestampText("ts", "2023-01-02 03:04:05Z") );
+        assertEquals( "2023-01-02 03:04:05", RedashPaginatorResultSet.toTimestampText("ts", "2023-01-02T03:04:05-0300") );
+        assertEquals( "2023-01-02 03:04:05.123456789", RedashPaginatorResultSet.toTimestampText("ts", "2023-01-02T03:04:05.1234567891") );
+        assertEquals( "2023-01-02 00:00:00", RedashPaginatorResultSet.toTimestampText("ts", "2023-01-02") );
+        try {
+            RedashPaginatorResultSet.toTimestampText("ts", "yesterday");
+            fail("not a timestamp");
+        } catch (SQLException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*****************************************************************************************
+* Copyright (C) 2023-2026  Ricardo Leoneti                           Date: 2026-10-18
+*
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v2.0
+* which accompanies this distribution, and is available at
+* https://www.eclipse.org/org/documents/epl-2.0/EPL-2.0.html
+*
+*****************************************************************************************/
+package org.leoneti.jdbc.redash;
+
+import java.io.IOException;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import junit.framework.TestCase;
+
+public class RedashPayloadCodecTest extends TestCase {
+
+    static JSONObject payload(int result_id, int rows) {
+        final JSONArray columns = new JSONArray()
+                .put( new JSONObject().put("name", "id").put("type", "integer") )
+                .put( new JSONObject().put("name", "name").put("type", "string") )
+                .put( new JSONObject().put("name", "amount").put("type", "float") );
+        final JSONArray data = new JSONArray();
+        for(int i=0; i < rows; i++) {
+            final JSONObject row = new JSONObject().put("id", i).put("amount", i * 1.5);
+            row.put("name", i % 3 == 0 ? JSONObject.NULL : "name \u00e7\u00e3o " + i);
+            data.put(row);
+        }
+        final JSONObject queryResult = new JSONObject()
+                .put("id", result_id)
+                .put("query", "SELECT * FROM t")
+                .put("runtime", 0.25)
+                .put("retrieved_at", "2023-01-02T03:04:05.000Z")
+                .put("data", new JSONObject().put("columns", columns).put("rows", data));
+        return new JSONObject().put("query_result", queryResult);
+    }
+
+    public void testRoundTrip() throws IOException {
+        final JSONObject jo = payload(7, 100);
+        final JSONObject decoded = RedashPayloadCodec.decode( RedashPayloadCodec.encode(jo) );
+        assertTrue( jo.similar(decoded) );
+    }
+
+    public void testEmptyResult() throws IOException {
+        final JSONObject jo = payload(8, 0);
+        final JSONObject decoded = RedashPayloadCodec.decode( RedashPayloadCodec.encode(jo) );
+        assertTrue( jo.similar(decoded) );
+        assertEquals( 0, decoded.getJSONObject("query_result").getJSONObject("data").getJSONArray("rows").length() );
+    }
+
+    public void testMissingValueIsNull() throws IOException {
+        final JSONObject jo = payload(9, 1);
+        jo.getJSONObject("query_result").getJSONObject("data").getJSONArray("rows").getJSONObject(0).remove("amount");
+        final JSONObject row = RedashPayloadCodec.decode( RedashPayloadCodec.encode(jo) )
+                .getJSONObject("query_result").getJSONObject("data").getJSONArray("rows").getJSONObject(0);
+        assertTrue( row.isNull("amount") );
+        assertEquals( 0, row.getInt("id") );
+    }
+
+    public void testCompressed() throws IOException {
+        final JSONObject jo = payload(10, 1000);
+        assertTrue( RedashPayloadCodec.encode(jo).length < jo.toString().length() / 4 );
+    }
+}
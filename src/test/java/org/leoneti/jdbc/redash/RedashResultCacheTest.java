@@ -0,0 +1,48 @@
+/*****************************************************************************************
+* Copyright (C) 2023-2026  Ricardo Leoneti                           Date: 2026-10-18
+*
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v2.0
+* which accompanies this distribution, and is available at
+* https://www.eclipse.org/org/documents/epl-2.0/EPL-2.0.html
+*
+*****************************************************************************************/
+package org.leoneti.jdbc.redash;
+
+import java.io.IOException;
+
+import org.json.JSONObject;
+
+import junit.framework.TestCase;
+
+public class RedashResultCacheTest extends TestCase {
+
+    public void testGetPut() throws IOException {
+        final RedashResultCache cache = new RedashResultCache(1 << 20);
+        assertNull( cache.get(1) );
+        final JSONObject jo = RedashPayloadCodecTest.payload(1, 10);
+        cache.put(1, jo);
+        assertTrue( jo.similar( cache.get(1) ) );
+        cache.clear();
+        assertNull( cache.get(1) );
+    }
+
+    public void testLeastRecentlyUsedEvicted() throws IOException {
+        final int size = RedashPayloadCodec.encode( RedashPayloadCodecTest.payload(1, 10) ).length;
+        // room for two payloads
+        final RedashResultCache cache = new RedashResultCache(size * 2 + size / 2);
+        cache.put(1, RedashPayloadCodecTest.payload(1, 10));
+        cache.put(2, RedashPayloadCodecTest.payload(2, 10));
+        assertNotNull( cache.get(1) );
+        cache.put(3, RedashPayloadCodecTest.payload(3, 10));
+        assertNotNull( cache.get(1) );
+        assertNull( cache.get(2) );
+        assertNotNull( cache.get(3) );
+    }
+
+    public void testPayloadLargerThanCache() throws IOException {
+        final RedashResultCache cache = new RedashResultCache(100);
+        cache.put(1, RedashPayloadCodecTest.payload(1, 1000));
+        assertNull( cache.get(1) );
+    }
+}
@@ -0,0 +1,71 @@
+/*****************************************************************************************
+* Copyright (C) 2023-2026  Ricardo Leoneti                           Date: 2026-10-18
+*
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v2.0
+* which accompanies this distribution, and is available at
+* https://www.eclipse.org/org/documents/epl-2.0/EPL-2.0.html
+*
+*****************************************************************************************/
+package org.leoneti.jdbc.redash;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import junit.framework.TestCase;
+
+public class RedashResultSetTest extends TestCase {
+
+    /**
+     * payload() with the name column sent without type.
+     */
+    private static JSONObject untyped(int rows) {
+        final JSONObject jo = RedashPayloadCodecTest.payload(1, rows);
+        final JSONArray columns = jo.getJSONObject("query_result").getJSONObject("data").getJSONArray("columns");
+        columns.getJSONObject(1).put("type", JSONObject.NULL);
+        return jo;
+    }
+
+    private static RedashResultSet streamed(JSONObject jo, int typeSampleRows) throws IOException {
+        final RedashResultStream stream = new RedashResultStream( new ByteArrayInputStream( jo.toString().getBytes(StandardCharsets.UTF_8) ) );
+        return new RedashResultSet(false, stream, "pg", typeSampleRows);
+    }
+
+    private static int count(RedashResultSet rs) throws SQLException {
+        int rows = 0;
+        while( rs.next() ) rows++;
+        rs.close();
+        return rows;
+    }
+
+    public void testStreamedUntypedRowsWithinTheSample() throws IOException, SQLException {
+        assertEquals( 3, count( streamed(untyped(3), 100) ) );
+        assertEquals( 3, count( streamed(RedashPayloadCodecTest.payload(1, 3), 100) ) );
+        assertEquals( 0, count( streamed(untyped(0), 100) ) );
+    }
+
+    public void testStreamedUntypedRowsPastTheSample() throws IOException, SQLException {
+        assertEquals( 3, count( streamed(untyped(3), 2) ) );
+        final int rows = RedashResultSet.STREAM_BLOCK_SIZE * 2 + 10;
+        final RedashResultSet rs = streamed(untyped(rows), 100);
+        assertEquals( Types.VARCHAR, rs.getMetaData().getColumnType(2) );
+        int read = 0;
+        while( rs.next() ) {
+            assertEquals( read, rs.getInt("id") );
+            read++;
+        }
+        rs.close();
+        assertEquals( rows, read );
+    }
+
+    public void testBufferedUntypedRows() throws SQLException {
+        final JSONObject jo = untyped(3);
+        assertEquals( 3, count( new RedashResultSet(false, jo, "pg", 100) ) );
+    }
+}
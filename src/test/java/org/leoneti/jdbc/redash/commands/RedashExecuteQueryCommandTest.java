@@ -0,0 +1,32 @@
+/*****************************************************************************************
+* Copyright (C) 2023-2026  Ricardo Leoneti                           Date: 2026-10-18
+*
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v2.0
+* which accompanies this distribution, and is available at
+* https://www.eclipse.org/org/documents/epl-2.0/EPL-2.0.html
+*
+*****************************************************************************************/
+package org.leoneti.jdbc.redash.commands;
+
+import java.util.regex.Matcher;
+
+import junit.framework.TestCase;
+
+public class RedashExecuteQueryCommandTest extends TestCase {
+
+    private static String maxAge(String sql) {
+        final Matcher m = RedashExecuteQueryCommand.MAX_AGE_HINT.matcher(sql);
+        return m.lookingAt() ? m.group(1) : null;
+    }
+
+    public void testMaxAgeHint() {
+        assertEquals( "600", maxAge("/*+ max_age=600 */ SELECT 1") );
+        assertEquals( "600", maxAge("\n select /*+MAX_AGE = 600*/ 1") );
+        // not leading: in a literal or a comment of the statement
+        assertNull( maxAge("SELECT '/*+ max_age=600 */'") );
+        assertNull( maxAge("SELECT 1 -- /*+ max_age=600 */") );
+        assertNull( maxAge("-- /*+ max_age=600 */\nSELECT 1") );
+        assertNull( maxAge("SELECT 1") );
+    }
+}